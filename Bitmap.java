@@ -0,0 +1,129 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** A set of small ints, held as a bitmap in memory and stored compressed.
+ *  The stored form is word-aligned run-length encoding in the manner of
+ *  EWAH: the 64-bit words of the bitmap are written as a sequence of
+ *  groups, each a marker word followed by literal words.  A marker holds,
+ *  in its low bit, the value of a run of words that are all zeros or all
+ *  ones, in its next 32 bits the length of that run, and in its top 31
+ *  bits the number of literal words that follow it.  Sparse or dense
+ *  regions thus take a word or so however long they are.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Bitmap {
+
+    /** An empty bitmap. */
+    Bitmap() {
+        this(new long[INITIAL_WORDS]);
+    }
+
+    /** A bitmap whose words are WORDS. */
+    private Bitmap(long[] words) {
+        this.words = words;
+    }
+
+    /** Adds I to this set. */
+    void set(int i) {
+        int w = i >>> 6;
+        if (w >= words.length) {
+            words = Arrays.copyOf(words, Math.max(w + 1, 2 * words.length));
+        }
+        words[w] |= 1L << i;
+    }
+
+    /** Returns true iff I is in this set. */
+    boolean get(int i) {
+        int w = i >>> 6;
+        return w < words.length && (words[w] & (1L << i)) != 0;
+    }
+
+    /** Adds the members of OTHER to this set. */
+    void or(Bitmap other) {
+        if (other.words.length > words.length) {
+            words = Arrays.copyOf(words, other.words.length);
+        }
+        for (int w = 0; w < other.words.length; w += 1) {
+            words[w] |= other.words[w];
+        }
+    }
+
+    /** Returns the number of members of this set. */
+    int cardinality() {
+        int result = 0;
+        for (long word : words) {
+            result += Long.bitCount(word);
+        }
+        return result;
+    }
+
+    /** Writes this bitmap, compressed, to OUT. */
+    void write(DataOutputStream out) throws IOException {
+        int end = words.length;
+        while (end > 0 && words[end - 1] == 0) {
+            end -= 1;
+        }
+        out.writeInt(end);
+        int w = 0;
+        while (w < end) {
+            long clean = words[w];
+            int run = 0;
+            if (clean == 0 || clean == -1) {
+                while (w + run < end && words[w + run] == clean) {
+                    run += 1;
+                }
+            }
+            int start = w + run;
+            int literals = 0;
+            while (start + literals < end && words[start + literals] != 0
+                   && words[start + literals] != -1) {
+                literals += 1;
+            }
+            out.writeLong((clean == -1 && run > 0 ? 1L : 0L)
+                          | (long) run << 1 | (long) literals << RUN_BITS);
+            for (int i = start; i < start + literals; i += 1) {
+                out.writeLong(words[i]);
+            }
+            w = start + literals;
+        }
+    }
+
+    /** Returns the bitmap written by write to IN. */
+    static Bitmap read(DataInputStream in) throws IOException {
+        int end = in.readInt();
+        long[] words = new long[Math.max(end, 1)];
+        int w = 0;
+        while (w < end) {
+            long marker = in.readLong();
+            int run = (int) ((marker >>> 1) & RUN_MASK);
+            int literals = (int) (marker >>> RUN_BITS);
+            if (w + run + literals > end) {
+                throw new IOException("corrupt bitmap");
+            }
+            if ((marker & 1) != 0) {
+                Arrays.fill(words, w, w + run, -1L);
+            }
+            w += run;
+            for (int i = 0; i < literals; i += 1) {
+                words[w] = in.readLong();
+                w += 1;
+            }
+        }
+        return new Bitmap(words);
+    }
+
+    /** Number of low bits of a marker holding its run's value and
+     *  length. */
+    private static final int RUN_BITS = 33;
+    /** Mask of the run length of a marker, once shifted down. */
+    private static final long RUN_MASK = (1L << (RUN_BITS - 1)) - 1;
+    /** Number of words of a new bitmap. */
+    private static final int INITIAL_WORDS = 16;
+
+    /** The bits, 64 to a word, lowest first. */
+    private long[] words;
+}
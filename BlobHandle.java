@@ -0,0 +1,74 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/** A handle on one blob of the object store.  Creating a handle reads
+ *  nothing; the blob's contents are only read, as a stream, when the handle
+ *  is opened, chunk by chunk if the blob is stored in chunks.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class BlobHandle {
+
+    /** A handle on the blob with the given ID in STORE. */
+    BlobHandle(ObjectStore store, String id) {
+        this.store = store;
+        this.id = id;
+    }
+
+    /** Returns the id of this blob. */
+    String getId() {
+        return id;
+    }
+
+    /** Returns the size of this blob in bytes. */
+    long size() {
+        return store.blobSize(id);
+    }
+
+    /** Returns a stream of the contents of this blob.  The caller must
+     *  close it. */
+    InputStream open() {
+        return store.openBlob(id);
+    }
+
+    /** Returns a channel reading the contents of this blob.  The caller must
+     *  close it. */
+    ReadableByteChannel openChannel() {
+        return Channels.newChannel(open());
+    }
+
+    /** Returns the entire contents of this blob. */
+    byte[] readAll() {
+        return store.readBlob(id);
+    }
+
+    /** Writes the contents of this blob to FILE, creating or overwriting it
+     *  as needed. */
+    void copyTo(File file) {
+        if (file.isDirectory()) {
+            throw new IllegalArgumentException("cannot overwrite directory");
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (InputStream in = open()) {
+            Trace.count(Trace.OBJECT_BYTES_READ,
+                        Files.copy(in, file.toPath(),
+                                   StandardCopyOption.REPLACE_EXISTING));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The store holding this blob. */
+    private final ObjectStore store;
+    /** The id of this blob. */
+    private final String id;
+}
@@ -0,0 +1,124 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Moves the working directory from one commit to another.  The trees of
+ *  the two commits are compared first, so that only the files that were
+ *  added, removed or changed between them are touched; the files to be
+ *  written are copied out of the object store in parallel on a pool of
+ *  bounded size.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Checkout {
+
+    /** A checkout from the files of commit FROM to those of commit TO. */
+    Checkout(Commit from, Commit to) {
+        this.from = from;
+        this.changes = from.diff(to);
+    }
+
+    /** Returns the path of a working file that is not tracked in the
+     *  current commit and would be overwritten, or null if there is
+     *  none. */
+    String untrackedInTheWay() {
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            if (e.getValue() != null && new File(e.getKey()).exists()
+                && !from.containsFile(e.getKey())) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    /** Deletes the files the target commit does not have, writes the ones
+     *  it adds or changes, and records them all in INDEX.  Entries of
+     *  INDEX for staged files are reset to the target commit's versions;
+     *  the entries of untouched files are kept, along with their stat
+     *  data. */
+    void run(Index index) {
+        try (Trace.Phase p = Trace.phase("checkout")) {
+            ArrayList<String> writes = new ArrayList<>();
+            for (Map.Entry<String, String> e : changes.entrySet()) {
+                if (e.getValue() == null) {
+                    FileStructure.deleteWorkingFile(e.getKey());
+                } else {
+                    writes.add(e.getKey());
+                }
+            }
+            POOL.invoke(new WriteTask(writes, 0, writes.size()));
+            ArrayList<String> staged = new ArrayList<>(index.staged());
+            staged.addAll(index.removed());
+            for (String path : staged) {
+                String id = changes.containsKey(path) ? changes.get(path)
+                    : from.getFileHash(path);
+                if (id == null) {
+                    index.remove(path);
+                } else {
+                    index.put(path, id, Index.TRACKED, null);
+                }
+            }
+            for (Map.Entry<String, String> e : changes.entrySet()) {
+                if (e.getValue() == null) {
+                    index.remove(e.getKey());
+                } else {
+                    index.put(e.getKey(), e.getValue(), Index.TRACKED,
+                              Index.stat(e.getKey()));
+                }
+            }
+            index.write();
+        }
+    }
+
+    /** Writes the files from FROM to TO of a list, splitting the work in
+     *  half until each piece is small. */
+    private class WriteTask extends RecursiveAction {
+        /** A task writing FILES from FROM to TO. */
+        WriteTask(List<String> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                ObjectStore store = ObjectStore.instance();
+                for (int i = from; i < to; i += 1) {
+                    String path = files.get(i);
+                    new BlobHandle(store, changes.get(path))
+                        .copyTo(new File(path));
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new WriteTask(files, from, mid),
+                          new WriteTask(files, mid, to));
+            }
+        }
+
+        /** The list of files. */
+        private final List<String> files;
+        /** The first file to write. */
+        private final int from;
+        /** The end of the files to write. */
+        private final int to;
+    }
+
+    /** Number of files below which a task writes them itself. */
+    private static final int THRESHOLD = 8;
+
+    /** The pool writing files.  Its size is bounded so that a checkout of
+     *  many files does not swamp the disk with writers. */
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+        Math.min(8, 2 * Runtime.getRuntime().availableProcessors()));
+
+    /** The commit being moved away from. */
+    private final Commit from;
+    /** The files that differ, mapped to their ids in the target commit. */
+    private final TreeMap<String, String> changes;
+}
@@ -0,0 +1,102 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Splits a stream into content-defined chunks, in the manner of FastCDC.
+ *  A Gear hash, which shifts in one table entry per byte, is rolled over
+ *  the data, and a chunk ends where the high bits of the hash picked by a
+ *  mask are all zero.  Since the hash depends only on the last 64 bytes,
+ *  the boundaries depend only on the nearby contents, so an edit moves at
+ *  most the boundaries around it and the chunks elsewhere in the file stay
+ *  the same.  No boundary is looked for in the first MIN_SIZE bytes of a
+ *  chunk; up to AVERAGE_SIZE a stricter mask is used, and after it a looser
+ *  one, which keeps chunk sizes close to AVERAGE_SIZE; and no chunk is
+ *  longer than MAX_SIZE.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Chunker {
+
+    /** Least size of a chunk other than the last. */
+    static final int MIN_SIZE = 1 << 14;
+    /** Size chunks are aimed at. */
+    static final int AVERAGE_SIZE = 1 << 16;
+    /** Greatest size of a chunk. */
+    static final int MAX_SIZE = 1 << 18;
+
+    /** A chunker splitting the contents of IN, which it does not close. */
+    Chunker(InputStream in) {
+        this.in = in;
+    }
+
+    /** Returns the next chunk, or null once the stream is exhausted. */
+    byte[] next() throws IOException {
+        while (length < buffer.length) {
+            int n = in.read(buffer, length, buffer.length - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+        if (length == 0) {
+            return null;
+        }
+        int cut = boundary(buffer, length);
+        byte[] result = Arrays.copyOf(buffer, cut);
+        System.arraycopy(buffer, cut, buffer, 0, length - cut);
+        length -= cut;
+        return result;
+    }
+
+    /** Returns the length of the chunk starting the first N bytes of
+     *  DATA. */
+    static int boundary(byte[] data, int n) {
+        if (n <= MIN_SIZE) {
+            return n;
+        }
+        int normal = Math.min(n, AVERAGE_SIZE), end = Math.min(n, MAX_SIZE);
+        long hash = 0;
+        int i = MIN_SIZE;
+        for (; i < normal; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & STRICT_MASK) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & LOOSE_MASK) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /** Mask of the bits of the hash that must be zero at a boundary
+     *  before AVERAGE_SIZE: two more than the bits of AVERAGE_SIZE. */
+    private static final long STRICT_MASK = -1L << (Long.SIZE - 18);
+    /** Mask of the bits of the hash that must be zero at a boundary after
+     *  AVERAGE_SIZE: two fewer than the bits of AVERAGE_SIZE. */
+    private static final long LOOSE_MASK = -1L << (Long.SIZE - 14);
+
+    /** The random value rolled into the hash for each byte value.  The
+     *  seed is fixed, so that every repository cuts the same data in the
+     *  same places. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** The stream being split. */
+    private final InputStream in;
+    /** The data read but not yet returned, at the start of the buffer. */
+    private final byte[] buffer = new byte[MAX_SIZE];
+    /** The number of bytes in BUFFER. */
+    private int length;
+}
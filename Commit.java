@@ -1,10 +1,11 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Collections;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -14,9 +15,9 @@ import java.util.Date;
  */
 public class Commit implements Serializable {
 
-    /** A new Commit in the current system that contains the file MESSAGE,
-     *  the PARENT commit of this commit and a list of all the BLOBS that are
-     *  pointed to by this commit. */
+    /** A new Commit in the current system that contains the file MESSAGE
+     *  and the PARENT commit of this commit.  It starts out with the files
+     *  of PARENT, which are changed with addFileData and removeFileData. */
     Commit(String message, Commit parent) {
         DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         Date date = new Date();
@@ -24,42 +25,94 @@ public class Commit implements Serializable {
         dateReference = dateFormat.format(date);
         commitMessage = message;
         parentPointer = parent;
-        fileData = new HashMap<>();
-        filesStore = new ArrayList<>();
-        fileNames = new ArrayList<>();
-    }
-
-    /** Add the file NAME and BYTES to their respective ArrayLists. */
-    public void addNameByte(String name, byte[] bytes) {
-        fileNames.addAll(parentPointer.fileNames);
-        filesStore.addAll(parentPointer.filesStore);
-        fileNames.add(name);
-        filesStore.add(bytes);
+        parentId = parent == null ? null : parent.getHash();
+        treeId = parent == null ? null : parent.getTreeHash();
+        changes = new TreeMap<>();
     }
 
     /** Map the file NAME to its corresponding HASHVAL. */
     public void addFileData(String name, String hashVal) {
-        fileData.put(name, hashVal);
+        changes.put(name, hashVal);
+        if (fileData != null) {
+            fileData.put(name, hashVal);
+        }
     }
 
-    /** Return the HashMap of filenames to hashvalues. */
+    /** Stop tracking the file NAME. */
+    public void removeFileData(String name) {
+        changes.put(name, null);
+        if (fileData != null) {
+            fileData.remove(name);
+        }
+    }
+
+    /** Return the HashMap of file names, which are paths relative to the
+     *  working directory, to hashvalues.  It is built from the commit's
+     *  tree the first time it is asked for. */
     public HashMap<String, String> getFileData() {
+        if (fileData == null) {
+            HashMap<String, String> files = new HashMap<>();
+            try (Trace.Phase p = Trace.phase("tree read")) {
+                Tree.flatten(ObjectStore.instance(), treeId, "", files);
+            }
+            if (changes != null) {
+                for (Map.Entry<String, String> e : changes.entrySet()) {
+                    if (e.getValue() == null) {
+                        files.remove(e.getKey());
+                    } else {
+                        files.put(e.getKey(), e.getValue());
+                    }
+                }
+            }
+            fileData = files;
+        }
         return fileData;
     }
 
-    /** Returns a String value of this commit using the date, message,
-     * parent, and list of filenames. */
+    /** Returns a String value of this commit from its tree, parents, date,
+     *  and message, from which its hash is computed. */
     public String toString() {
-        String answer = commitMessage + ": " + dateReference + " ";
-        for (String s : fileData.keySet()) {
-            answer += s + " ";
+        StringBuilder answer = new StringBuilder();
+        answer.append("tree ").append(treeId).append('\n');
+        if (parentId != null) {
+            answer.append("parent ").append(parentId).append('\n');
         }
-        return answer;
+        if (secondParentId != null) {
+            answer.append("parent ").append(secondParentId).append('\n');
+        }
+        answer.append("date ").append(dt.getTime()).append('\n');
+        answer.append('\n').append(commitMessage);
+        return answer.toString();
     }
 
-    /** Set HashCode for this particular commit. */
+    /** Writes the trees of this commit's files and sets its HashCode, which
+     *  is computed from its contents. */
     public void setHash() {
-        hash = Utils.sha1(toString());
+        try (Trace.Phase p = Trace.phase("tree write")) {
+            if (treeId == null || changes != null && !changes.isEmpty()) {
+                treeId = Tree.update(ObjectStore.instance(), treeId,
+                                     changes == null ? new TreeMap<>()
+                                     : changes);
+            }
+            changes = null;
+            hash = Utils.sha1(toString());
+        }
+    }
+
+    /** Returns the hash of the tree of this commit's files. */
+    public String getTreeHash() {
+        return treeId;
+    }
+
+    /** Returns the files that differ between this commit and OTHER, mapped
+     *  to their hashes in OTHER, or to null if OTHER does not have them.
+     *  Directories whose trees are the same in both are skipped. */
+    public TreeMap<String, String> diff(Commit other) {
+        try (Trace.Phase p = Trace.phase("tree diff")) {
+            TreeMap<String, String> result = new TreeMap<>();
+            Tree.diff(ObjectStore.instance(), treeId, other.treeId, "", result);
+            return result;
+        }
     }
 
     /** Returns the HashCode for this particular commit. */
@@ -72,45 +125,34 @@ public class Commit implements Serializable {
         return dateReference;
     }
 
-    /** Returns the byte[] from the file named SHAVAL. */
+    /** Returns the byte[] of the blob named SHAVAL, reassembled from its
+     *  chunks if it is stored in chunks. */
     public byte[] getBytes(String shaVal) {
-        File f = new File(".gitlet/" + shaVal);
-        return Utils.readContents(f);
+        return ObjectStore.instance().readBlob(shaVal);
     }
 
     /** Returns the byte[] from the FILENAME. */
     public byte[] getBytesByFileName(String fileName) {
-        String shaVal = getFileHash(fileName);
-        File f = new File(".gitlet/" + shaVal);
-        return Utils.readContents(f);
+        return getBytes(getFileHash(fileName));
     }
 
-    /** Returns an ArrayList of all the files as byte[] tracked in
-     *  this particular commit. */
-    public ArrayList<byte[]> getFileBytes() {
-        arrayListHelper();
-        return (ArrayList) filesStore;
+    /** Returns a handle on the contents of FILENAME as tracked in this
+     *  commit, or null if it is not tracked.  Nothing is read until the
+     *  handle is opened. */
+    public BlobHandle getBlob(String fileName) {
+        String shaVal = getFileHash(fileName);
+        if (shaVal == null) {
+            return null;
+        }
+        return new BlobHandle(ObjectStore.instance(), shaVal);
     }
 
     /** Returns an ArrayList of all the filenames as strings tracked in
-     *  this particular commit. */
+     *  this particular commit, in sorted order. */
     public ArrayList<String> getFileNames() {
-        arrayListHelper();
-        return (ArrayList) fileNames;
-    }
-
-    /** Updates filenames and filebytes. */
-    public void arrayListHelper() {
-        ArrayList<String> filenames = new ArrayList<>();
-        ArrayList<byte[]> filebytes = new ArrayList<>();
-        File tempFile;
-        for (String name : fileData.keySet()) {
-            tempFile = new File(".gitlet/" + fileData.get(name));
-            filebytes.add(Utils.readContents(tempFile));
-            filenames.add(name);
-        }
-        fileNames = filenames;
-        filesStore = filebytes;
+        ArrayList<String> names = new ArrayList<>(getFileData().keySet());
+        Collections.sort(names);
+        return names;
     }
 
     /** Return the message for this particular commit. */
@@ -118,16 +160,37 @@ public class Commit implements Serializable {
         return commitMessage;
     }
 
-    /** Return the parent of this particular commit. */
+    /** Return the parent of this particular commit, reading it from the
+     *  repository the first time it is asked for. */
     public Commit getParent() {
+        if (parentPointer == null && parentId != null) {
+            parentPointer = CommitStore.instance().get(parentId);
+        }
         return parentPointer;
     }
 
+    /** Return the hash of the parent of this commit, or null if this is the
+     *  initial commit. */
+    public String getParentHash() {
+        return parentId;
+    }
+
     /** Returns a commit equality by comparing this commit to B. */
     public boolean isEquals(Commit b) {
         return (b.getDate().equals(dt));
     }
 
+    /** Record that this commit merges commit OTHER into its parent. */
+    public void setSecondParent(Commit other) {
+        secondParentId = other.getHash();
+    }
+
+    /** Return the hash of the commit merged into this one, or null if this
+     *  is not a merge commit. */
+    public String getSecondParentHash() {
+        return secondParentId;
+    }
+
     /** Returns true iff this commit is before B. */
     public boolean before(Commit b) {
         return (dt.before(b.getDate()));
@@ -140,17 +203,23 @@ public class Commit implements Serializable {
 
     /** Returns true if this is the initial commit. */
     public boolean isInit() {
-        return (parentPointer == null);
+        return (parentId == null);
     }
 
-    /** Returns a STRING hash given a FILENAME. */
+    /** Returns a STRING hash given a FILENAME, reading only the trees of
+     *  the directories leading to it. */
     public String getFileHash(String fileName) {
-        return fileData.get(fileName);
+        if (fileData != null) {
+            return fileData.get(fileName);
+        } else if (changes != null && changes.containsKey(fileName)) {
+            return changes.get(fileName);
+        }
+        return Tree.lookup(ObjectStore.instance(), treeId, fileName);
     }
 
     /** Returns true iff this contains FILENAME. */
     public boolean containsFile(String fileName) {
-        return fileData.containsKey(fileName);
+        return getFileHash(fileName) != null;
     }
 
     /** Date of this commit's creation. */
@@ -159,14 +228,20 @@ public class Commit implements Serializable {
     private String dateReference;
     /** The commit message of this commit. */
     private String commitMessage;
-    /** The parent commit of this commit. */
-    private Commit parentPointer;
-    /** A list of the byte[] of files tracked by this commit. */
-    private List<byte[]> filesStore;
-    /** A list of the filenames tracked by this commit. */
-    private List<String> fileNames;
-    /** A HashMap that maps a filename to its sha1 value. */
-    private HashMap<String, String> fileData;
+    /** The hash of the parent commit of this commit. */
+    private String parentId;
+    /** The hash of the commit merged into this one, if any. */
+    private String secondParentId;
+    /** The parent commit of this commit, once it has been read. */
+    private transient Commit parentPointer;
+    /** The hash of the tree of this commit's files. */
+    private String treeId;
+    /** The files added (mapped to their sha1 values) and removed (mapped to
+     *  null) since the parent, until the tree is written. */
+    private transient TreeMap<String, String> changes;
+    /** A HashMap that maps each file name to its sha1 value, once it has
+     *  been read from the tree. */
+    private transient HashMap<String, String> fileData;
     /** The hash value of the commit using sha1. */
     private String hash;
 }
@@ -0,0 +1,490 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/** The commit graph of a repository: a compact file giving, for every
+ *  commit, the rows of its parents, its date and its generation number (one
+ *  more than the largest generation of its parents, the initial commit
+ *  having generation 1).  A commit's generation is always greater than that
+ *  of any of its ancestors, which lets walks of the history stop as soon as
+ *  they reach commits too old to matter.  The file is memory-mapped, so a
+ *  walk reads only the rows it visits.
+ *
+ *  The graph file starts with the magic bytes "GGRF" and a version number
+ *  and continues with one fixed-size row per commit, in the order the
+ *  commits were made, so parents always precede their children.  A row is
+ *  the commit's 20-byte id, the rows of its first and second parents (-1 if
+ *  absent), its generation and its date in milliseconds.
+ *
+ *  Rows are found by id through sorted runs in the manner of an LSM tree.
+ *  A run is a file holding the row below which it covers the graph, a
+ *  fanout table of 256 ints, then the ids of the rows it covers in sorted
+ *  order, each followed by its row number.  The lookup file is the main
+ *  run, covering the first rows of the graph; a smaller recent run covers
+ *  the rows after them; and at most MAX_TAIL rows added since are searched
+ *  one by one.  Once the tail grows past that, the recent run is rewritten
+ *  to take it in, and once the recent run grows past RUN_FACTOR times the
+ *  square root of the number of rows, it is merged into the lookup file.
+ *  Every search thus takes two binary searches and a scan of a few rows,
+ *  while adding a commit rewrites on average only O(sqrt n) entries.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class CommitGraph {
+
+    /** The graph stored in FILE, found by id through LOOKUP and the
+     *  recent run beside it. */
+    CommitGraph(File file, File lookup) {
+        this.file = file;
+        this.lookupFile = lookup;
+        this.recentFile = new File(lookup.getPath() + RECENT);
+    }
+
+    /** Returns the graph file. */
+    File getFile() {
+        return file;
+    }
+
+    /** Returns true iff the graph file exists. */
+    boolean exists() {
+        return file.isFile();
+    }
+
+    /** Deletes the graph and its runs, leaving it empty. */
+    void delete() {
+        file.delete();
+        lookupFile.delete();
+        recentFile.delete();
+        rows = null;
+        lookup = null;
+        recent = null;
+    }
+
+    /** Returns the number of commits in the graph. */
+    int size() {
+        return (int) ((rows().capacity() - HEADER) / ROW);
+    }
+
+    /** Returns the row of the commit with the given ID, or -1 if it is not
+     *  in the graph. */
+    int find(String id) {
+        byte[] key = ObjectStore.toBytes(id);
+        for (ByteBuffer run : new ByteBuffer[] { lookup(), recent() }) {
+            int k = lowerBound(run, key);
+            if (k < entries(run)
+                && compare(run, LOOKUP_HEADER + k * LOOKUP_ROW, key) == 0) {
+                return rowAt(run, k);
+            }
+        }
+        ByteBuffer rows = rows();
+        for (int row = size() - 1; row >= recent().getInt(0); row -= 1) {
+            if (compare(rows, HEADER + row * ROW, key) == 0) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the rows of up to LIMIT commits whose ids begin with
+     *  PREFIX, a string of at least two lowercase hex digits.  Each sorted
+     *  run is searched by binary search for the first id not less than
+     *  PREFIX, and only the ids that follow it and share the prefix are
+     *  examined. */
+    int[] findPrefix(String prefix, int limit) {
+        StringBuilder padded = new StringBuilder(prefix);
+        while (padded.length() < 2 * ObjectStore.ID_LENGTH) {
+            padded.append('0');
+        }
+        byte[] key = ObjectStore.toBytes(padded.toString());
+        int[] result = new int[limit];
+        int n = 0;
+        for (ByteBuffer run : new ByteBuffer[] { lookup(), recent() }) {
+            for (int k = lowerBound(run, key);
+                 k < entries(run) && n < limit; k += 1) {
+                int row = rowAt(run, k);
+                if (!idAt(row).startsWith(prefix)) {
+                    break;
+                }
+                result[n++] = row;
+            }
+        }
+        for (int row = recent().getInt(0); row < size() && n < limit;
+             row += 1) {
+            if (idAt(row).startsWith(prefix)) {
+                result[n++] = row;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Returns the id of the commit in ROW. */
+    String idAt(int row) {
+        byte[] id = new byte[ObjectStore.ID_LENGTH];
+        rows().get(HEADER + row * ROW, id);
+        return ObjectStore.toHex(id);
+    }
+
+    /** Returns the row of the first parent of the commit in ROW, or -1. */
+    int parent(int row) {
+        return rows().getInt(HEADER + row * ROW + PARENT1);
+    }
+
+    /** Returns the row of the second parent of the commit in ROW, or -1. */
+    int secondParent(int row) {
+        return rows().getInt(HEADER + row * ROW + PARENT2);
+    }
+
+    /** Returns the generation number of the commit in ROW. */
+    int generation(int row) {
+        return rows().getInt(HEADER + row * ROW + GENERATION);
+    }
+
+    /** Returns the date, in milliseconds, of the commit in ROW. */
+    long date(int row) {
+        return rows().getLong(HEADER + row * ROW + DATE);
+    }
+
+    /** Adds the commit with the given ID, made on DATE (in milliseconds),
+     *  whose parents have ids PARENT and SECONDPARENT (either of which may
+     *  be null), unless it is already present.  The parents must already be
+     *  in the graph. */
+    void add(String id, String parent, String secondParent, long date) {
+        if (exists() && find(id) >= 0) {
+            return;
+        }
+        int p1 = parent == null ? -1 : find(parent);
+        int p2 = secondParent == null ? -1 : find(secondParent);
+        int gen = 1 + Math.max(p1 < 0 ? 0 : generation(p1),
+                               p2 < 0 ? 0 : generation(p2));
+        ByteBuffer row = ByteBuffer.allocate(ROW);
+        row.put(ObjectStore.toBytes(id));
+        row.putInt(p1).putInt(p2).putInt(gen).putLong(date);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            if (out.length() == 0) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+            }
+            out.seek(out.length());
+            out.write(row.array());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        rows = null;
+        int n = size();
+        if (n - recent().getInt(0) > MAX_TAIL) {
+            int sorted = lookup().getInt(0);
+            int tail = recent().getInt(0);
+            if (n - sorted > RUN_FACTOR * Math.sqrt(n)) {
+                writeRun(lookupFile, new ByteBuffer[] { lookup(), recent() },
+                         tail, n);
+                recentFile.delete();
+            } else {
+                writeRun(recentFile, new ByteBuffer[] { recent() }, tail, n);
+            }
+            lookup = null;
+            recent = null;
+        }
+    }
+
+    /** Returns the row of a best common ancestor of the commits in rows A
+     *  and B: one that is not an ancestor of any other common ancestor.
+     *  Commits are visited in decreasing order of generation, so the first
+     *  commit reached from both A and B is the answer, and no commit older
+     *  than it is ever read. */
+    int mergeBase(int a, int b) {
+        if (a == b) {
+            return a;
+        }
+        byte[] flags = new byte[size()];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(byGeneration());
+        flags[a] |= FROM_A;
+        flags[b] |= FROM_B;
+        queue.add(a);
+        queue.add(b);
+        while (!queue.isEmpty()) {
+            int row = queue.poll();
+            if (flags[row] == (FROM_A | FROM_B)) {
+                return row;
+            }
+            for (int p : new int[] { parent(row), secondParent(row) }) {
+                if (p >= 0 && (flags[p] | flags[row]) != flags[p]) {
+                    if (flags[p] == 0) {
+                        queue.add(p);
+                    }
+                    flags[p] |= flags[row];
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Returns true iff the commit in row A is an ancestor of (or is) the
+     *  commit in row B.  The walk back from B never visits commits whose
+     *  generation is below A's. */
+    boolean isAncestor(int a, int b) {
+        int floor = generation(a);
+        boolean[] seen = new boolean[size()];
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = b;
+        seen[b] = true;
+        while (top > 0) {
+            int row = stack[--top];
+            if (row == a) {
+                return true;
+            }
+            for (int p : new int[] { parent(row), secondParent(row) }) {
+                if (p >= 0 && !seen[p] && generation(p) >= floor) {
+                    seen[p] = true;
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                    }
+                    stack[top++] = p;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns an ordering of rows by decreasing generation, and then by
+     *  decreasing date. */
+    private Comparator<Integer> byGeneration() {
+        return (x, y) -> {
+            int c = Integer.compare(generation(y), generation(x));
+            return c != 0 ? c : Long.compare(date(y), date(x));
+        };
+    }
+
+    /** Writes TARGET as a run covering the rows of RUNS, which must
+     *  cover the graph up to row FROM, and rows FROM to TO of the graph.
+     *  The rows after FROM are sorted, and then merged with the entries of
+     *  RUNS, which already are. */
+    private void writeRun(File target, ByteBuffer[] runs, int from, int to) {
+        int n = runs.length;
+        byte[][] tail = new byte[to - from][];
+        Integer[] order = new Integer[to - from];
+        ByteBuffer rows = rows();
+        int[] counts = new int[256];
+        for (int i = 0; i < tail.length; i += 1) {
+            order[i] = i;
+            tail[i] = new byte[ObjectStore.ID_LENGTH];
+            rows.get(HEADER + (from + i) * ROW, tail[i]);
+            counts[tail[i][0] & 0xff] += 1;
+        }
+        Arrays.sort(order, (x, y) -> Arrays.compareUnsigned(tail[x],
+                                                            tail[y]));
+        for (ByteBuffer run : runs) {
+            for (int b = 0; b < 256; b += 1) {
+                counts[b] += run.getInt(4 + b * 4)
+                    - (b == 0 ? 0 : run.getInt(b * 4));
+            }
+        }
+        int[] next = new int[n + 1];
+        byte[][] heads = new byte[n + 1][];
+        for (int j = 0; j <= n; j += 1) {
+            heads[j] = head(runs, tail, order, j, 0);
+        }
+        try {
+            File temp = File.createTempFile("graph", null,
+                                            target.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(to);
+                int total = 0;
+                for (int count : counts) {
+                    total += count;
+                    out.writeInt(total);
+                }
+                for (int k = 0; k < total; k += 1) {
+                    int min = -1;
+                    for (int j = 0; j <= n; j += 1) {
+                        if (heads[j] != null && (min < 0 || Arrays
+                            .compareUnsigned(heads[j], heads[min]) < 0)) {
+                            min = j;
+                        }
+                    }
+                    out.write(heads[min]);
+                    out.writeInt(min < n ? rowAt(runs[min], next[min])
+                                 : from + order[next[min]]);
+                    next[min] += 1;
+                    heads[min] = head(runs, tail, order, min, next[min]);
+                }
+            }
+            Files.move(temp.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the Kth smallest id of source J of a merge, or null if it
+     *  has no more: one of RUNS, or, for J past them, the ids TAIL taken in
+     *  the order ORDER. */
+    private static byte[] head(ByteBuffer[] runs, byte[][] tail,
+                               Integer[] order, int j, int k) {
+        if (j == runs.length) {
+            return k < tail.length ? tail[order[k]] : null;
+        } else if (k >= entries(runs[j])) {
+            return null;
+        }
+        byte[] id = new byte[ObjectStore.ID_LENGTH];
+        runs[j].get(LOOKUP_HEADER + k * LOOKUP_ROW, id);
+        return id;
+    }
+
+    /** Returns the number of entries of RUN. */
+    private static int entries(ByteBuffer run) {
+        return run.getInt(4 + 255 * 4);
+    }
+
+    /** Returns the row of the Kth entry of RUN. */
+    private static int rowAt(ByteBuffer run, int k) {
+        return run.getInt(LOOKUP_HEADER + k * LOOKUP_ROW
+                          + ObjectStore.ID_LENGTH);
+    }
+
+    /** Returns the position in RUN of the first entry whose id is not less
+     *  than KEY, found by binary search within the entries sharing KEY's
+     *  first byte. */
+    private static int lowerBound(ByteBuffer run, byte[] key) {
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : run.getInt(4 + (first - 1) * 4);
+        int hi = run.getInt(4 + first * 4);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(run, LOOKUP_HEADER + mid * LOOKUP_ROW, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Returns the mapped graph file. */
+    private ByteBuffer rows() {
+        if (rows == null) {
+            if (!file.isFile()) {
+                rows = ByteBuffer.allocate(HEADER);
+            } else {
+                rows = map(file);
+            }
+        }
+        return rows;
+    }
+
+    /** Returns the mapped lookup file, or an empty run if it does not yet
+     *  exist or covers rows the graph does not have. */
+    private ByteBuffer lookup() {
+        if (lookup == null) {
+            if (lookupFile.isFile()) {
+                lookup = map(lookupFile);
+            }
+            if (lookup == null || lookup.getInt(0) > size()) {
+                lookup = ByteBuffer.allocate(LOOKUP_HEADER);
+            }
+        }
+        return lookup;
+    }
+
+    /** Returns the mapped recent run, or an empty run following the lookup
+     *  file if it does not exist or does not start where the lookup file
+     *  ends. */
+    private ByteBuffer recent() {
+        if (recent == null) {
+            int sorted = lookup().getInt(0);
+            if (recentFile.isFile()) {
+                recent = map(recentFile);
+                if (recent.getInt(0) - entries(recent) != sorted
+                    || recent.getInt(0) > size()) {
+                    recent = null;
+                }
+            }
+            if (recent == null) {
+                recent = ByteBuffer.allocate(LOOKUP_HEADER);
+                recent.putInt(0, sorted);
+            }
+        }
+        return recent;
+    }
+
+    /** Returns the contents of FILE, mapped read-only. */
+    private static MappedByteBuffer map(File file) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                                       in.length());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Compares the id at POS in BUF with KEY as unsigned bytes. */
+    private static int compare(ByteBuffer buf, int pos, byte[] key) {
+        for (int i = 0; i < key.length; i += 1) {
+            int c = (buf.get(pos + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Magic bytes beginning a graph file. */
+    private static final byte[] MAGIC = { 'G', 'G', 'R', 'F' };
+    /** Version of the graph format. */
+    private static final int VERSION = 1;
+    /** Length of the graph file's header. */
+    private static final int HEADER = 8;
+    /** Length of a row. */
+    private static final int ROW = ObjectStore.ID_LENGTH + 20;
+    /** Offset in a row of the first parent. */
+    private static final int PARENT1 = ObjectStore.ID_LENGTH;
+    /** Offset in a row of the second parent. */
+    private static final int PARENT2 = PARENT1 + 4;
+    /** Offset in a row of the generation. */
+    private static final int GENERATION = PARENT2 + 4;
+    /** Offset in a row of the date. */
+    private static final int DATE = GENERATION + 4;
+    /** Length of the lookup file's header: a count and the fanout. */
+    private static final int LOOKUP_HEADER = 4 + 256 * 4;
+    /** Length of an entry of the lookup file. */
+    private static final int LOOKUP_ROW = ObjectStore.ID_LENGTH + 4;
+    /** Suffix of the name of the recent run, added to the lookup file's. */
+    private static final String RECENT = ".recent";
+    /** Most rows searched one by one before the recent run is
+     *  rewritten. */
+    private static final int MAX_TAIL = 64;
+    /** The recent run is merged into the lookup file once it covers more
+     *  than this many times the square root of the number of rows. */
+    private static final int RUN_FACTOR = 8;
+    /** Flag marking commits reached from the first commit of a walk. */
+    private static final byte FROM_A = 1;
+    /** Flag marking commits reached from the second commit of a walk. */
+    private static final byte FROM_B = 2;
+
+    /** The graph file. */
+    private final File file;
+    /** The lookup file. */
+    private final File lookupFile;
+    /** The file of the recent run. */
+    private final File recentFile;
+    /** The mapped graph file, or null if not yet mapped. */
+    private ByteBuffer rows;
+    /** The mapped lookup file, or null if not yet mapped. */
+    private ByteBuffer lookup;
+    /** The mapped recent run, or null if not yet mapped. */
+    private ByteBuffer recent;
+}
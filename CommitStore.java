@@ -0,0 +1,289 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The commits of a gitlet repository.  Each commit is stored on its own
+ *  as a commit object in the object store, named by its hash, so loading one
+ *  commit never requires loading any other; a commit's parent is only read
+ *  when it is asked for.  The ids of all commits are also appended, one per
+ *  line, to the commit log so that they can be enumerated in the order they
+ *  were made, and added to the commit graph, which answers questions about
+ *  ancestry without loading commits.  The commit log and the graph are
+ *  appended to as commits are made, and reported to the transaction (see
+ *  Transaction), so that rows of commits no command committed are dropped.
+ *  The message index is rebuilt if it is found to hold more rows than the
+ *  graph.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class CommitStore {
+
+    /** Type of an object holding a commit. */
+    static final String COMMIT = "commit";
+
+    /** Fewest hex digits accepted as an abbreviated commit id. */
+    static final int MIN_PREFIX = 4;
+
+    /** The commits stored in OBJECTS, listed in LOG and described by
+     *  GRAPH. */
+    CommitStore(ObjectStore objects, File log, CommitGraph graph,
+                MessageIndex messages) {
+        this.objects = objects;
+        this.log = log;
+        this.graph = graph;
+        this.messages = messages;
+    }
+
+    /** Returns the commits of the repository in the current directory. */
+    static CommitStore instance() {
+        if (instance == null) {
+            Transaction.instance().recover();
+            instance = new CommitStore(ObjectStore.instance(),
+                                       new File(".gitlet/commitLog"),
+                                       new CommitGraph(
+                                           new File(".gitlet/commitGraph"),
+                                           new File(".gitlet/"
+                                                    + "commitGraph.lookup")),
+                                       new MessageIndex(
+                                           new File(".gitlet/messageIndex")));
+        }
+        return instance;
+    }
+
+    /** Forgets the commits of the repository in the current directory, so that
+     *  the next call of instance() reads it afresh from disk. */
+    static void invalidate() {
+        instance = null;
+    }
+
+    /** Returns the commit with the given ID, or null if there is none. */
+    Commit get(String id) {
+        ObjectId key = id == null ? null : ObjectId.parse(id);
+        if (key == null) {
+            return null;
+        }
+        Commit result = loaded.get(key);
+        if (result == null) {
+            if (!objects.contains(id)) {
+                return null;
+            }
+            result = decode(objects.read(id));
+            loaded.put(key, result);
+        }
+        return result;
+    }
+
+    /** Returns true iff there is a commit with the given ID. */
+    boolean contains(String id) {
+        ObjectId key = ObjectId.parse(id);
+        return key != null && (loaded.containsKey(key)
+                               || objects.contains(id));
+    }
+
+    /** Stores commit C, whose hash must already be set. */
+    void put(Commit c) {
+        String id = c.getHash();
+        boolean isNew = !contains(id);
+        objects.put(id, COMMIT, encode(c));
+        loaded.put(ObjectId.fromHex(id), c);
+        if (isNew) {
+            try (OutputStream out = new FileOutputStream(log, true)) {
+                out.write((id + "\n").getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            Transaction.instance().appended(log.getPath());
+            graph().add(id, c.getParentHash(), c.getSecondParentHash(),
+                        c.getDate().getTime());
+            Transaction.instance().appended(graph.getFile().getPath());
+            messages();
+        }
+    }
+
+    /** Returns the ids, oldest first, of the commits made between SINCE
+     *  and UNTIL inclusive (in milliseconds) whose messages match QUERY in
+     *  the given MODE of MessageIndex.  A null QUERY matches any message. */
+    List<String> find(String query, int mode, long since, long until) {
+        CommitGraph g = graph();
+        ArrayList<String> result = new ArrayList<>();
+        for (int row : messages().search(query, mode, since, until)) {
+            result.add(g.idAt(row));
+        }
+        return result;
+    }
+
+    /** Returns the full id of the commit whose id is or begins with ID, or
+     *  null if there is none.  An abbreviated ID must have at least
+     *  MIN_PREFIX hex digits.  Throws IllegalArgumentException if more
+     *  than one commit matches. */
+    String resolve(String id) {
+        String prefix = id.toLowerCase();
+        if (prefix.length() < MIN_PREFIX
+            || prefix.length() > 2 * ObjectStore.ID_LENGTH
+            || !prefix.matches("[0-9a-f]+")) {
+            return null;
+        }
+        if (prefix.length() == 2 * ObjectStore.ID_LENGTH) {
+            return contains(prefix) ? prefix : null;
+        }
+        CommitGraph g = graph();
+        int[] rows = g.findPrefix(prefix, 2);
+        if (rows.length > 1) {
+            throw new IllegalArgumentException("Commit id " + id
+                                               + " is ambiguous.");
+        }
+        return rows.length == 0 ? null : g.idAt(rows[0]);
+    }
+
+    /** Returns the id of the latest common ancestor of commits A and B,
+     *  or null if they have none. */
+    String mergeBase(String a, String b) {
+        CommitGraph g = graph();
+        int row = g.mergeBase(g.find(a), g.find(b));
+        return row < 0 ? null : g.idAt(row);
+    }
+
+    /** Returns true iff commit A is an ancestor of, or is, commit B. */
+    boolean isAncestor(String a, String b) {
+        CommitGraph g = graph();
+        return g.isAncestor(g.find(a), g.find(b));
+    }
+
+    /** Returns the commit graph, first building it from the commits
+     *  of the commit log if it does not yet exist.  Commits whose objects
+     *  are gone are left out. */
+    CommitGraph graph() {
+        if (!graph.exists()) {
+            for (String id : ids()) {
+                Commit c = get(id);
+                if (c != null) {
+                    graph.add(id, c.getParentHash(), c.getSecondParentHash(),
+                              c.getDate().getTime());
+                }
+            }
+            Transaction.instance().appended(graph.getFile().getPath());
+        }
+        return graph;
+    }
+
+    /** Returns the message index, first adding to it any commits of the
+     *  graph it does not yet hold, and rebuilding it if it holds rows the
+     *  graph does not. */
+    MessageIndex messages() {
+        try (Trace.Phase p = Trace.phase("message index")) {
+            CommitGraph g = graph();
+            if (messages.size() > g.size()) {
+                messages.delete();
+            }
+            for (int row = messages.size(); row < g.size(); row += 1) {
+                Commit c = get(g.idAt(row));
+                messages.add(row, g.date(row), c.getMessage());
+            }
+            return messages;
+        }
+    }
+
+    /** Drops from the commit log the commits whose objects have been
+     *  deleted, and rebuilds the commit graph and message index from the
+     *  commits left, renumbering their rows.  The graph and index are
+     *  deleted before the log is rewritten, so that if this is interrupted
+     *  they are rebuilt from whichever log is found, leaving out the
+     *  deleted commits either way.  Does nothing if no commit is gone. */
+    void compact() {
+        List<String> ids = ids();
+        ArrayList<String> kept = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (String id : ids) {
+            if (objects.contains(id)) {
+                kept.add(id);
+                text.append(id).append('\n');
+            }
+        }
+        if (kept.size() == ids.size()) {
+            return;
+        }
+        graph.delete();
+        messages.delete();
+        try {
+            File temp = File.createTempFile("commitLog", null,
+                                            log.getAbsoluteFile()
+                                            .getParentFile());
+            Files.write(temp.toPath(),
+                        text.toString().getBytes(StandardCharsets.US_ASCII));
+            Files.move(temp.toPath(), log.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Transaction.instance().appended(log.getPath());
+        loaded = new ObjectIdMap<>();
+        messages();
+    }
+
+    /** Returns the ids of all commits, oldest first. */
+    List<String> ids() {
+        ArrayList<String> result = new ArrayList<>();
+        if (!log.isFile()) {
+            return result;
+        }
+        String text = new String(Utils.readContents(log),
+                                 StandardCharsets.US_ASCII);
+        for (String id : text.split("\n")) {
+            if (!id.isEmpty()) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the serialized form of C. */
+    private static byte[] encode(Commit c) {
+        try (Trace.Phase p = Trace.phase("serialize")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(c);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /** Returns the commit serialized in BYTES. */
+    private static Commit decode(byte[] bytes) {
+        try (Trace.Phase p = Trace.phase("deserialize")) {
+            try (ObjectInputStream in =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (Commit) in.readObject();
+            } catch (IOException | ClassNotFoundException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** The commits of the repository in the current directory. */
+    private static CommitStore instance;
+
+    /** The store holding the commit objects. */
+    private final ObjectStore objects;
+    /** The file listing the ids of all commits. */
+    private final File log;
+    /** The graph of all commits. */
+    private final CommitGraph graph;
+    /** The index of the messages and dates of all commits. */
+    private final MessageIndex messages;
+    /** The commits read or written so far, by id. */
+    private ObjectIdMap<Commit> loaded = new ObjectIdMap<>();
+}
@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A long-running server for the repository in the current directory,
+ *  which keeps the repository's state (the index, commits already read, the
+ *  mapped commit graph, open packs and trees) in memory between commands,
+ *  so that each command pays neither for starting a JVM nor for reading
+ *  that state again.  It listens on the Unix domain socket
+ *  .gitlet/daemon.sock; Main forwards commands to it whenever it is running.
+ *
+ *  Clients are served concurrently, each on its own thread, but commands
+ *  run one at a time, since they share the repository.  Before each
+ *  command, the daemon checks the files other gitlet processes might have
+ *  changed behind its back (the index, the commit graph, the packs and the
+ *  metadata journal) and forgets its state if any has changed.
+ *
+ *  A client sends the number of arguments and then each argument.  The
+ *  daemon streams back the command's output as it is written, in frames
+ *  holding a stream (OUT or ERR), a length and that many bytes of output,
+ *  ending with a frame for stream DONE.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Daemon {
+
+    /** Frame of standard output. */
+    static final int OUT = 1;
+    /** Frame of standard error. */
+    static final int ERR = 2;
+    /** Frame ending a reply. */
+    static final int DONE = 0;
+
+    /** The socket of the daemon of the repository in the current
+     *  directory. */
+    static final File SOCKET = new File(".gitlet/daemon.sock");
+
+    /** Serves the repository in the current directory until killed. */
+    static void serve() {
+        if (!new File(".gitlet").isDirectory()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            return;
+        }
+        if (SOCKET.exists()) {
+            try (SocketChannel probe = SocketChannel.open(address())) {
+                System.out.println("A daemon is already running.");
+                return;
+            } catch (IOException excp) {
+                SOCKET.delete();
+            }
+        }
+        Daemon daemon = new Daemon();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address());
+            Runtime.getRuntime().addShutdownHook(new Thread(SOCKET::delete));
+            System.out.println("Serving " + new File("").getAbsolutePath());
+            while (true) {
+                SocketChannel client = server.accept();
+                CLIENTS.execute(() -> daemon.handle(client));
+            }
+        } catch (IOException excp) {
+            System.err.println(excp.getMessage());
+        }
+    }
+
+    /** Runs the command ARGS through the daemon, if one is running,
+     *  copying its output to this process's.  Returns false, having done
+     *  nothing, if there is no daemon to run it. */
+    static boolean forward(String... args) {
+        if (!SOCKET.exists()) {
+            return false;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(address());
+        } catch (IOException excp) {
+            return false;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 Channels.newOutputStream(channel));
+             DataInputStream in = new DataInputStream(
+                 Channels.newInputStream(channel))) {
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            while (true) {
+                int stream = in.readByte();
+                if (stream == DONE) {
+                    break;
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                (stream == ERR ? System.err : System.out).write(bytes);
+            }
+            System.out.flush();
+            System.err.flush();
+        } catch (IOException excp) {
+            System.err.println(excp.getMessage());
+        }
+        return true;
+    }
+
+    /** Reads one command from CLIENT, runs it and sends back its output. */
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client;
+             DataInputStream in = new DataInputStream(
+                 Channels.newInputStream(channel));
+             DataOutputStream out = new DataOutputStream(
+                 Channels.newOutputStream(channel))) {
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i += 1) {
+                args[i] = in.readUTF();
+            }
+            run(args, new Frames(out, OUT), new Frames(out, ERR));
+            out.writeByte(DONE);
+            out.flush();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Runs the command ARGS, writing its output to STDOUT and STDERR.
+     *  Commands run one at a time. */
+    private synchronized void run(String[] args, OutputStream stdout,
+                                  OutputStream stderr) {
+        PrintStream oldOut = System.out, oldErr = System.err;
+        System.setOut(new PrintStream(new BufferedOutputStream(stdout,
+                                                               BUFFER_SIZE),
+                                      false, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(stderr, true, StandardCharsets.UTF_8));
+        try {
+            refresh();
+            Main.execute(new FileStructure(index), args);
+        } catch (RuntimeException excp) {
+            System.err.println(excp.getMessage());
+            forget();
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+        if (index != null && index.isChanged()) {
+            forget();
+        }
+        seen = fingerprint();
+    }
+
+    /** Forgets the state held in memory if the repository was changed
+     *  since the last command, and reads the index if need be. */
+    private void refresh() {
+        if (!fingerprint().equals(seen)) {
+            forget();
+        }
+        File file = new File(".gitlet/index");
+        if (index == null && file.isFile()) {
+            index = new Index(file);
+        }
+    }
+
+    /** Forgets all state held in memory. */
+    private void forget() {
+        ObjectStore.invalidate();
+        CommitStore.invalidate();
+        Transaction.invalidate();
+        Refs.invalidate();
+        index = null;
+    }
+
+    /** Returns a summary of the sizes and modification times of the files
+     *  that change when the repository does. */
+    private static String fingerprint() {
+        StringBuilder result = new StringBuilder();
+        for (String name : WATCHED) {
+            File file = new File(".gitlet", name);
+            result.append(file.length()).append(':')
+                .append(file.lastModified()).append(' ');
+        }
+        return result.toString();
+    }
+
+    /** A stream of output sent to a client as frames of one stream. */
+    private static class Frames extends OutputStream {
+        /** Output sent to OUT as frames of the given STREAM. */
+        Frames(DataOutputStream out, int stream) {
+            this.out = out;
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                out.writeByte(stream);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        /** The client's connection. */
+        private final DataOutputStream out;
+        /** The stream, OUT or ERR, of this output. */
+        private final int stream;
+    }
+
+    /** Returns the address of SOCKET. */
+    private static UnixDomainSocketAddress address() {
+        return UnixDomainSocketAddress.of(SOCKET.getPath());
+    }
+
+    /** Size of the buffer of a command's standard output. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The files, relative to .gitlet, whose changes are watched. */
+    private static final String[] WATCHED = {
+        "index", "journal", "commitGraph", "commitGraph.lookup",
+        "objects/pack",
+    };
+
+    /** Threads serving clients.  Each client gets a thread of its own,
+     *  which mostly waits on its socket. */
+    private static final ExecutorService CLIENTS =
+        Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    /** The index, as of the last command. */
+    private Index index;
+    /** The fingerprint of the repository after the last command. */
+    private String seen;
+}
@@ -0,0 +1,212 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/** Binary deltas between two versions of an object.  A delta begins with
+ *  the lengths of the base and the result as variable-length integers and
+ *  continues with a sequence of instructions.  An instruction byte of the
+ *  form 0xxxxxxx (nonzero) inserts the next xxxxxxx bytes of the delta;
+ *  one of the form 1xxxxxxx copies a run of the base, with bits 0-3
+ *  telling which bytes of the little-endian offset follow and bits 4-6
+ *  which bytes of the length follow (a length of 0 meaning 0x10000).
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Delta {
+
+    /** Returns a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarInt(out, base.length);
+        writeVarInt(out, target.length);
+
+        int[] heads = new int[tableSize(base.length)];
+        int[] next = new int[Math.max(0, base.length / BLOCK)];
+        Arrays.fill(heads, -1);
+        for (int b = 0; b + BLOCK <= base.length; b += BLOCK) {
+            int h = hash(base, b) & (heads.length - 1);
+            next[b / BLOCK] = heads[h];
+            heads[h] = b / BLOCK;
+        }
+
+        int pending = 0;
+        int t = 0;
+        while (t + BLOCK <= target.length) {
+            int bestStart = -1, bestLen = 0;
+            int h = hash(target, t) & (heads.length - 1);
+            int probes = 0;
+            for (int k = heads[h]; k >= 0 && probes < MAX_PROBES;
+                 k = next[k], probes += 1) {
+                int start = k * BLOCK;
+                int len = matchLength(base, start, target, t);
+                if (len > bestLen) {
+                    bestStart = start;
+                    bestLen = len;
+                }
+            }
+            if (bestLen < BLOCK) {
+                t += 1;
+                continue;
+            }
+            int back = 0;
+            while (back < t - pending && bestStart - back > 0
+                   && base[bestStart - back - 1] == target[t - back - 1]) {
+                back += 1;
+            }
+            writeInserts(out, target, pending, t - back);
+            writeCopy(out, bestStart - back, bestLen + back);
+            t += bestLen;
+            pending = t;
+        }
+        writeInserts(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        if (readVarInt(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta does not match base");
+        }
+        long size = readVarInt(delta, pos);
+        byte[] result = new byte[(int) size];
+        int r = 0;
+        int p = pos[0];
+        while (p < delta.length) {
+            int op = delta[p++] & 0xff;
+            if ((op & 0x80) != 0) {
+                long offset = 0, len = 0;
+                for (int i = 0; i < 4; i += 1) {
+                    if ((op & (1 << i)) != 0) {
+                        offset |= (delta[p++] & 0xffL) << (8 * i);
+                    }
+                }
+                for (int i = 0; i < 3; i += 1) {
+                    if ((op & (0x10 << i)) != 0) {
+                        len |= (delta[p++] & 0xffL) << (8 * i);
+                    }
+                }
+                if (len == 0) {
+                    len = MAX_COPY;
+                }
+                System.arraycopy(base, (int) offset, result, r, (int) len);
+                r += len;
+            } else if (op != 0) {
+                System.arraycopy(delta, p, result, r, op);
+                p += op;
+                r += op;
+            } else {
+                throw new IllegalArgumentException("corrupt delta");
+            }
+        }
+        if (r != result.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Writes the bytes of TARGET from FROM to TO as insert instructions
+     *  onto OUT. */
+    private static void writeInserts(ByteArrayOutputStream out, byte[] target,
+                                     int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(target, from, n);
+            from += n;
+        }
+    }
+
+    /** Writes instructions onto OUT copying LEN bytes of the base starting
+     *  at OFFSET. */
+    private static void writeCopy(ByteArrayOutputStream out, int offset,
+                                  int len) {
+        while (len > 0) {
+            int n = Math.min(MAX_COPY, len);
+            int op = 0x80;
+            byte[] args = new byte[7];
+            int k = 0;
+            for (int i = 0; i < 4; i += 1) {
+                int b = (offset >>> (8 * i)) & 0xff;
+                if (b != 0) {
+                    op |= 1 << i;
+                    args[k++] = (byte) b;
+                }
+            }
+            int size = n == MAX_COPY ? 0 : n;
+            for (int i = 0; i < 3; i += 1) {
+                int b = (size >>> (8 * i)) & 0xff;
+                if (b != 0) {
+                    op |= 0x10 << i;
+                    args[k++] = (byte) b;
+                }
+            }
+            out.write(op);
+            out.write(args, 0, k);
+            offset += n;
+            len -= n;
+        }
+    }
+
+    /** Returns the length of the common run of BASE starting at B and
+     *  TARGET starting at T. */
+    private static int matchLength(byte[] base, int b, byte[] target, int t) {
+        int n = 0;
+        while (b + n < base.length && t + n < target.length
+               && base[b + n] == target[t + n]) {
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Returns a hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = h * 31 + data[i];
+        }
+        return h ^ (h >>> 15);
+    }
+
+    /** Returns a power of two large enough to index a base of SIZE
+     *  bytes. */
+    private static int tableSize(int size) {
+        int n = 16;
+        while (n < size / BLOCK) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /** Writes VAL to OUT as a little-endian base-128 integer. */
+    static void writeVarInt(ByteArrayOutputStream out, long val) {
+        while (val >= 0x80) {
+            out.write((int) (val & 0x7f) | 0x80);
+            val >>>= 7;
+        }
+        out.write((int) val);
+    }
+
+    /** Returns the base-128 integer in DATA at POS[0], advancing POS[0]
+     *  past it. */
+    static long readVarInt(byte[] data, int[] pos) {
+        long val = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++] & 0xff;
+            val |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return val;
+    }
+
+    /** Length of the blocks of the base that are indexed for matching. */
+    private static final int BLOCK = 16;
+    /** Longest run a single copy instruction can express. */
+    private static final int MAX_COPY = 0x10000;
+    /** Longest run a single insert instruction can express. */
+    private static final int MAX_INSERT = 0x7f;
+    /** Most candidate blocks examined at each position of the target. */
+    private static final int MAX_PROBES = 8;
+}
@@ -0,0 +1,360 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Line diffs of texts.  Lines are first replaced by small ints, equal
+ *  lines by equal ints, in a single hashing pass, so that the diff itself
+ *  compares ints.  Common leading and trailing lines are then trimmed,
+ *  lines found on only one side are set aside, since they can never match,
+ *  and what remains is compared with Myers' O(ND) algorithm in its
+ *  linear-space form, which finds the middle snake of a shortest edit
+ *  script and recurses on either side of it.  Its working space is
+ *  proportional to the lines left after trimming.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Diff {
+
+    /** The lines of a text, held as its bytes and the offsets at which its
+     *  lines start, so that no line is copied. */
+    static final class Text {
+        /** The text held in BYTES. */
+        Text(byte[] bytes) {
+            this.bytes = bytes;
+            int count = 0;
+            for (byte b : bytes) {
+                if (b == '\n') {
+                    count += 1;
+                }
+            }
+            boolean partial = bytes.length > 0
+                && bytes[bytes.length - 1] != '\n';
+            starts = new int[count + (partial ? 1 : 0) + 1];
+            int line = 1;
+            for (int i = 0; i < bytes.length; i += 1) {
+                if (bytes[i] == '\n') {
+                    starts[line] = i + 1;
+                    line += 1;
+                }
+            }
+            starts[starts.length - 1] = bytes.length;
+        }
+
+        /** Returns the number of lines. */
+        int size() {
+            return starts.length - 1;
+        }
+
+        /** Returns true iff this text looks binary: it has a zero byte in its
+         *  first BINARY_CHECK bytes. */
+        boolean isBinary() {
+            for (int i = 0; i < Math.min(bytes.length, BINARY_CHECK);
+                 i += 1) {
+                if (bytes[i] == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Returns true iff the last line has no newline. */
+        boolean endsPartial() {
+            return bytes.length > 0 && bytes[bytes.length - 1] != '\n';
+        }
+
+        /** Writes lines FROM to TO of this text to OUT.  If NEWLINE, a
+         *  last line without a newline is given one. */
+        void write(OutputStream out, int from, int to, boolean newline)
+            throws IOException {
+            if (from >= to) {
+                return;
+            }
+            out.write(bytes, starts[from], starts[to] - starts[from]);
+            if (newline && to == size() && endsPartial()) {
+                out.write('\n');
+            }
+        }
+
+        /** Returns the hash of line I. */
+        private int hash(int i) {
+            int h = 1;
+            for (int k = starts[i]; k < starts[i + 1]; k += 1) {
+                h = 31 * h + bytes[k];
+            }
+            return h;
+        }
+
+        /** Returns true iff line I of this text equals line J of OTHER. */
+        private boolean lineEquals(int i, Text other, int j) {
+            return Arrays.equals(bytes, starts[i], starts[i + 1],
+                                 other.bytes, other.starts[j],
+                                 other.starts[j + 1]);
+        }
+
+        /** The contents of the text. */
+        private final byte[] bytes;
+        /** The offset of the start of each line, followed by the length of
+         *  the text. */
+        private final int[] starts;
+    }
+
+    /** A difference between two texts: lines A_START to A_END of the first
+     *  are replaced by lines B_START to B_END of the second.  Either range
+     *  may be empty. */
+    static final class Edit {
+        /** An edit replacing lines ASTART to AEND of one text by lines
+         *  BSTART to BEND of another. */
+        Edit(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+
+        @Override
+        public String toString() {
+            return aStart + "," + aEnd + "->" + bStart + "," + bEnd;
+        }
+
+        /** First line of the first text replaced. */
+        final int aStart;
+        /** End of the lines of the first text replaced. */
+        final int aEnd;
+        /** First line of the second text inserted. */
+        final int bStart;
+        /** End of the lines of the second text inserted. */
+        final int bEnd;
+    }
+
+    /** Returns the lines of each of TEXTS as ints, equal lines, in any of
+     *  TEXTS, having equal ints, numbered from 0 in order of their first
+     *  appearance.  The distinct lines are found through a table of their
+     *  hashes, probed linearly, so that no object is made per line. */
+    static int[][] lines(Text... texts) {
+        int total = 0;
+        for (Text text : texts) {
+            total += text.size();
+        }
+        int capacity = Integer.highestOneBit(Math.max(16, 2 * total)) * 2;
+        int mask = capacity - 1;
+        int[] slotText = new int[capacity];
+        int[] slotLine = new int[capacity];
+        int[] slotId = new int[capacity];
+        Arrays.fill(slotText, -1);
+        int distinct = 0;
+        int[][] result = new int[texts.length][];
+        for (int t = 0; t < texts.length; t += 1) {
+            Text text = texts[t];
+            result[t] = new int[text.size()];
+            for (int i = 0; i < text.size(); i += 1) {
+                int h = text.hash(i);
+                int slot = (h ^ (h >>> 16)) & mask;
+                while (slotText[slot] >= 0
+                       && !text.lineEquals(i, texts[slotText[slot]],
+                                           slotLine[slot])) {
+                    slot = (slot + 1) & mask;
+                }
+                if (slotText[slot] < 0) {
+                    slotText[slot] = t;
+                    slotLine[slot] = i;
+                    slotId[slot] = distinct;
+                    distinct += 1;
+                }
+                result[t][i] = slotId[slot];
+            }
+        }
+        return result;
+    }
+
+    /** Returns the edits turning the lines A into the lines B, in order,
+     *  none of them adjacent to another.  Common leading and trailing lines
+     *  are skipped first.  Lines of the rest that appear in only one of A
+     *  and B cannot be matched, so they are left out of the search, which
+     *  then runs on the lines the two have in common; when the two are
+     *  mostly different, this leaves it little to do. */
+    static List<Edit> diff(int[] a, int[] b) {
+        int n = a.length, m = b.length;
+        int pre = 0;
+        while (pre < n && pre < m && a[pre] == b[pre]) {
+            pre += 1;
+        }
+        int suf = 0;
+        while (suf < n - pre && suf < m - pre
+               && a[n - 1 - suf] == b[m - 1 - suf]) {
+            suf += 1;
+        }
+        int max = 0;
+        for (int i = pre; i < n - suf; i += 1) {
+            max = Math.max(max, a[i]);
+        }
+        for (int j = pre; j < m - suf; j += 1) {
+            max = Math.max(max, b[j]);
+        }
+        boolean[] inA = new boolean[max + 1], inB = new boolean[max + 1];
+        for (int i = pre; i < n - suf; i += 1) {
+            inA[a[i]] = true;
+        }
+        for (int j = pre; j < m - suf; j += 1) {
+            inB[b[j]] = true;
+        }
+        int[] aLines = matchable(a, pre, n - suf, inB);
+        int[] bLines = matchable(b, pre, m - suf, inA);
+        int[] ca = new int[aLines.length], cb = new int[bLines.length];
+        for (int i = 0; i < ca.length; i += 1) {
+            ca[i] = a[aLines[i]];
+        }
+        for (int j = 0; j < cb.length; j += 1) {
+            cb[j] = b[bLines[j]];
+        }
+        ArrayList<Edit> core = new ArrayList<>();
+        diff(ca, 0, ca.length, cb, 0, cb.length, core);
+        core.add(new Edit(ca.length, ca.length, cb.length, cb.length));
+
+        ArrayList<Edit> result = new ArrayList<>();
+        int lastA = pre, lastB = pre;
+        int i = 0, j = 0;
+        for (Edit e : core) {
+            for (; i < e.aStart; i += 1, j += 1) {
+                int x = aLines[i], y = bLines[j];
+                if (x > lastA || y > lastB) {
+                    result.add(new Edit(lastA, x, lastB, y));
+                }
+                lastA = x + 1;
+                lastB = y + 1;
+            }
+            i = e.aEnd;
+            j = e.bEnd;
+        }
+        if (lastA < n - suf || lastB < m - suf) {
+            result.add(new Edit(lastA, n - suf, lastB, m - suf));
+        }
+        return result;
+    }
+
+    /** Returns the indices of the lines FROM to TO of LINES that are in
+     *  OTHER. */
+    private static int[] matchable(int[] lines, int from, int to,
+                                   boolean[] other) {
+        int count = 0;
+        for (int i = from; i < to; i += 1) {
+            if (other[lines[i]]) {
+                count += 1;
+            }
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (int i = from; i < to; i += 1) {
+            if (other[lines[i]]) {
+                result[count] = i;
+                count += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Adds to EDITS the edits turning lines ALO to AHI of A into lines
+     *  BLO to BHI of B. */
+    private static void diff(int[] a, int aLo, int aHi, int[] b, int bLo,
+                             int bHi, List<Edit> edits) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            if (aLo < aHi || bLo < bHi) {
+                edits.add(new Edit(aLo, aHi, bLo, bHi));
+            }
+            return;
+        }
+        int[] snake = middleSnake(a, aLo, aHi, b, bLo, bHi);
+        if (snake == null) {
+            edits.add(new Edit(aLo, aHi, bLo, bHi));
+            return;
+        }
+        diff(a, aLo, snake[0], b, bLo, snake[1], edits);
+        diff(a, snake[0], aHi, b, snake[1], bHi, edits);
+    }
+
+    /** Returns the point {X, Y} at which a shortest edit script turning
+     *  lines ALO to AHI of A into lines BLO to BHI of B may be split in
+     *  two, found by running the forward and backward searches of Myers'
+     *  algorithm until they meet, or null if the ranges have no line in
+     *  common.  Both ranges must be nonempty. */
+    private static int[] middleSnake(int[] a, int aLo, int aHi, int[] b,
+                                     int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int[] forward = new int[2 * maxD + 2];
+        int[] backward = new int[2 * maxD + 2];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1Start = 0, k1End = 0, k2Start = 0, k2End = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k = -d + k1Start; k <= d - k1End; k += 2) {
+                int i = offset + k;
+                int x = k == -d || k != d && forward[i - 1] < forward[i + 1]
+                    ? forward[i + 1] : forward[i - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[i] = x;
+                if (x > n) {
+                    k1End += 2;
+                } else if (y > m) {
+                    k1Start += 2;
+                } else if (front) {
+                    int j = offset + delta - k;
+                    if (j >= 0 && j < backward.length && backward[j] != -1
+                        && x >= n - backward[j]) {
+                        return new int[] {aLo + x, bLo + y};
+                    }
+                }
+            }
+            for (int k = -d + k2Start; k <= d - k2End; k += 2) {
+                int i = offset + k;
+                int x = k == -d || k != d && backward[i - 1] < backward[i + 1]
+                    ? backward[i + 1] : backward[i - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m
+                       && a[aHi - x - 1] == b[bHi - y - 1]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[i] = x;
+                if (x > n) {
+                    k2End += 2;
+                } else if (y > m) {
+                    k2Start += 2;
+                } else if (!front) {
+                    int j = offset + delta - k;
+                    if (j >= 0 && j < forward.length && forward[j] != -1) {
+                        int fx = forward[j];
+                        int fy = offset + fx - j;
+                        if (fx >= n - x) {
+                            return new int[] {aLo + fx, bLo + fy};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Number of leading bytes searched for a zero byte to tell whether a
+     *  text is binary. */
+    private static final int BINARY_CHECK = 8000;
+}
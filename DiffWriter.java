@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Prints the differences between versions of files as unified diffs.
+ *  Versions are given with their ids, so that a file whose two versions
+ *  have the same id is passed over without being read; only the files that
+ *  actually changed are read and diffed.  Everything is written to a single
+ *  buffered stream, and files that look binary are only reported as
+ *  differing.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class DiffWriter implements AutoCloseable {
+
+    /** One version of a file: a blob of the object store, or a file on
+     *  disk with a known id. */
+    static final class Version {
+        /** The version with the given ID, held in FILE, or in the object
+         *  store if FILE is null. */
+        private Version(String id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+
+        /** Returns the version held in the object store as blob ID, or
+         *  null if ID is null. */
+        static Version blob(String id) {
+            return id == null ? null : new Version(id, null);
+        }
+
+        /** Returns the version with the given ID held in FILE. */
+        static Version file(String id, File file) {
+            return new Version(id, file);
+        }
+
+        /** Returns the contents of this version, found in STORE if it is
+         *  a blob. */
+        byte[] read(ObjectStore store) {
+            return file == null ? store.readBlob(id) : Utils.readContents(file);
+        }
+
+        /** The id of the contents. */
+        private final String id;
+        /** The file holding the contents, or null for a blob. */
+        private final File file;
+    }
+
+    /** A writer of diffs to the standard output, reading blobs from
+     *  STORE. */
+    DiffWriter(ObjectStore store) {
+        this.store = store;
+    }
+
+    /** Prints the differences between versions A and B of the file PATH,
+     *  either of which is null if the file is missing.  Nothing is printed
+     *  if they have the same id. */
+    void file(String path, Version a, Version b) {
+        if (a == null && b == null
+            || a != null && b != null && a.id.equals(b.id)) {
+            return;
+        }
+        Diff.Text x = new Diff.Text(a == null ? EMPTY : a.read(store));
+        Diff.Text y = new Diff.Text(b == null ? EMPTY : b.read(store));
+        String from = a == null ? NULL_PATH : "a/" + path;
+        String to = b == null ? NULL_PATH : "b/" + path;
+        try {
+            print("diff --git a/" + path + " b/" + path + "\n");
+            if (x.isBinary() || y.isBinary()) {
+                print("Binary files " + from + " and " + to + " differ\n");
+                return;
+            }
+            print("--- " + from + "\n+++ " + to + "\n");
+            int[][] lines = Diff.lines(x, y);
+            hunks(x, y, Diff.diff(lines[0], lines[1]));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Prints the edits EDITS turning X into Y as hunks, each with up to
+     *  CONTEXT lines of context on either side.  Edits close enough for
+     *  their contexts to meet share a hunk. */
+    private void hunks(Diff.Text x, Diff.Text y, List<Diff.Edit> edits)
+        throws IOException {
+        int i = 0;
+        while (i < edits.size()) {
+            int j = i;
+            while (j + 1 < edits.size()
+                   && edits.get(j + 1).aStart - edits.get(j).aEnd
+                      <= 2 * CONTEXT) {
+                j += 1;
+            }
+            Diff.Edit first = edits.get(i), last = edits.get(j);
+            int aLo = Math.max(0, first.aStart - CONTEXT);
+            int aHi = Math.min(x.size(), last.aEnd + CONTEXT);
+            int bLo = first.bStart - (first.aStart - aLo);
+            int bHi = last.bEnd + (aHi - last.aEnd);
+            print("@@ -" + range(aLo, aHi - aLo) + " +"
+                  + range(bLo, bHi - bLo) + " @@\n");
+            int at = aLo;
+            for (int k = i; k <= j; k += 1) {
+                Diff.Edit e = edits.get(k);
+                lines(x, at, e.aStart, ' ');
+                lines(x, e.aStart, e.aEnd, '-');
+                lines(y, e.bStart, e.bEnd, '+');
+                at = e.aEnd;
+            }
+            lines(x, at, aHi, ' ');
+            i = j + 1;
+        }
+    }
+
+    /** Prints lines FROM to TO of TEXT, each preceded by PREFIX. */
+    private void lines(Diff.Text text, int from, int to, char prefix)
+        throws IOException {
+        for (int i = from; i < to; i += 1) {
+            out.write(prefix);
+            text.write(out, i, i + 1, false);
+            if (i == text.size() - 1 && text.endsPartial()) {
+                out.write(NO_NEWLINE);
+            }
+        }
+    }
+
+    /** Returns the range of COUNT lines starting at line START, counted
+     *  from 0, as written in a hunk header. */
+    private static String range(int start, int count) {
+        if (count == 0) {
+            return start + ",0";
+        } else if (count == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (start + 1) + "," + count;
+    }
+
+    /** Prints TEXT. */
+    private void print(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() {
+        try {
+            out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Lines of context around each change. */
+    private static final int CONTEXT = 3;
+    /** The name printed for a missing version. */
+    private static final String NULL_PATH = "/dev/null";
+    /** The contents of a missing version. */
+    private static final byte[] EMPTY = new byte[0];
+    /** Printed after a last line that has no newline. */
+    private static final byte[] NO_NEWLINE =
+        "\n\\ No newline at end of file\n".getBytes(StandardCharsets.UTF_8);
+
+    /** The store holding the blobs diffed. */
+    private final ObjectStore store;
+    /** Destination of the diffs. */
+    private final OutputStream out =
+        new BufferedOutputStream(System.out, 1 << 16);
+}
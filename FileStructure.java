@@ -1,20 +1,26 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.IOError;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
 
 
 /** The structure of gitlet.
@@ -26,152 +32,112 @@ public class FileStructure {
     public FileStructure() {
     }
 
-    /** Initialize gitlet with an empty stagingArea and an empty directory
-     * of trackedFiles. */
+    /** Initializes a new FileStructure whose index, already read, is
+     *  INDEX. */
+    FileStructure(Index index) {
+        this.index = index;
+    }
+
+    /** Initialize gitlet with an empty object store and an empty index. */
     public void init() {
         File dir = new File(".gitlet");
         boolean successful = dir.mkdir();
         if (successful) {
-            File stage = new File(".gitlet/stagingArea");
-            stage.mkdir();
-            File tracked = new File(".gitlet/trackedFiles");
-            tracked.mkdir();
-            File removed = new File(".gitlet/removedFiles");
-            removed.mkdir();
+            ObjectStore.instance().getDir().mkdir();
             Commit initialCommit = new Commit("initial commit", null);
             initialCommit.setHash();
             head = initialCommit.getHash();
             currentBranch = "master";
-            branchPointer.put(currentBranch, initialCommit);
-            commits.put(head, initialCommit);
-            serialize("initialCommit", initialCommit);
-            serialize("branchPointers", branchPointer);
-            serialize("commits", commits);
-            serialize("head", head);
-            serialize("currentBranch", currentBranch);
+            commits.put(initialCommit);
+            refs.setCurrentBranch(currentBranch);
+            commitSer();
+            getIndex().write();
         } else {
             System.out.println("A gitlet version-control "
                     + "system already exists in the current directory.");
         }
     }
 
-    /** Adds the file named FILENAME. */
-    public void add(String fileName) {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
+    /** Adds the files named by PATHS, each of which may name a file, a
+     *  directory whose files are all added, or a glob pattern.  Files are
+     *  hashed and written to the object store in parallel, each being read
+     *  once, and only their ids are staged in the index; files whose stat
+     *  data show them to be unchanged since they were last added or
+     *  committed are not read at all, and the index is written once. */
+    public void add(String... paths) {
         Commit latest = getHead();
-        File removed;
-        for (String name : Utils.plainFilenamesIn(".gitlet/removedFiles")) {
-            if (fileName.equals(name)) {
-                removed = new File(".gitlet/removedFiles/" + name);
-                removed.delete();
-                return;
-            }
-        }
-        HashMap<String, String> files = latest.getFileData();
-        if (files.keySet().contains(fileName)) {
-            File tempFile = new File(fileName);
-            byte[] bytes = Utils.readContents(tempFile);
-            if (files.get(fileName).equals(Utils.sha1(bytes))) {
-                return;
+        Index index = getIndex();
+        ArrayList<String> patterns = new ArrayList<>();
+        for (String path : paths) {
+            Index.Entry entry = index.get(path);
+            if (entry != null && entry.getState() == Index.REMOVED) {
+                index.put(path, entry.getId(), Index.TRACKED, null);
+            } else {
+                patterns.add(path);
             }
         }
-        try {
-            File sourceFile = new File(fileName);
-            File destinationFile = new File(".gitlet/stagingArea/" + fileName);
-            byte[] fileByteStream = Utils.readContents(sourceFile);
-            Utils.writeContents(destinationFile, fileByteStream);
-        } catch (IllegalArgumentException e) {
+        ArrayList<String> missing = new ArrayList<>();
+        List<String> files = Stager.expand(patterns, missing);
+        if (!missing.isEmpty()) {
             System.err.println("File does not exist.");
+            return;
+        }
+        Stager stager = new Stager(index, latest);
+        for (Stager.Result r : stager.stage(files)) {
+            index.put(r.path, r.id, r.changed ? Index.ADDED : Index.TRACKED,
+                      r.stat);
         }
+        index.write();
     }
 
     /** Commits the files with name MESSAGE. */
     public void commit(String message) {
+        commit(message, null);
+    }
+
+    /** Commits the files with name MESSAGE, recording that it merges in
+     *  commit MERGED if that is not null.  The staged files are already in
+     *  the object store, so only the commit's metadata are written. */
+    private void commit(String message, Commit merged) {
         commitDeser();
-        File stage = new File(".gitlet/stagingArea");
-        File removed = new File(".gitlet/removedFiles");
-        ArrayList<String> removedFiles;
-        removedFiles = new ArrayList<>(Utils.plainFilenamesIn(removed));
-        if (Utils.plainFilenamesIn(stage).isEmpty()
-                && removedFiles.isEmpty()) {
+        Index index = getIndex();
+        List<String> stagedFiles = index.staged();
+        List<String> removedFiles = index.removed();
+        if (stagedFiles.isEmpty() && removedFiles.isEmpty()) {
             System.out.println("No changes added to the commit."); return;
         } else if (message.equals("")) {
             System.out.println("Please enter a commit message."); return;
         }
         Commit headCommit = commits.get(head);
-        Commit latest = new Commit(message, commits.get(head));
-        HashMap<String, String> parentFiles = headCommit.getFileData();
-        String tempHash;
-        for (String name : parentFiles.keySet()) {
-            tempHash = parentFiles.get(name);
-            latest.addFileData(name, tempHash);
-        }
-        if (!Utils.plainFilenamesIn(stage).isEmpty()) {
-            File targetFile;
-            byte[] targetBytes;
-            for (String s : Utils.plainFilenamesIn(stage)) {
-                targetFile = new File(s);
-                targetBytes = Utils.readContents(targetFile);
-                tempHash = Utils.sha1(targetBytes);
-                latest.addFileData(s, tempHash); trackFiles(s);
-            }
+        Commit latest = new Commit(message, headCommit);
+        for (String s : stagedFiles) {
+            Index.Entry entry = index.get(s);
+            latest.addFileData(s, entry.getId());
+            index.put(s, entry.getId(), Index.TRACKED, entry);
         }
-        if (!removedFiles.isEmpty()) {
-            ArrayList<String> toRemove = new ArrayList<>();
-            for (String name : latest.getFileData().keySet()) {
-                if (removedFiles.contains(name)) {
-                    removed = new File(".gitlet/removedFiles/" + name);
-                    removed.delete(); toRemove.add(name);
-                }
-            }
-            for (String name : toRemove) {
-                latest.getFileData().remove(name);
-            }
+        for (String name : removedFiles) {
+            latest.removeFileData(name);
+            index.remove(name);
         }
-        String hashVal;
-        for (String name : latest.getFileData().keySet()) {
-            hashVal = latest.getFileData().get(name);
-            if (!Utils.plainFilenamesIn(".gitlet").contains(hashVal)) {
-                File sourceFile = new File(".gitlet/trackedFiles/" + name);
-                File targetFile = new File(".gitlet/" + hashVal);
-                byte[] sourceBytes = Utils.readContents(sourceFile);
-                latest.addNameByte(name, sourceBytes);
-                Utils.writeContents(targetFile, sourceBytes);
-
-            }
+        if (merged != null) {
+            latest.setSecondParent(merged);
         }
         latest.setHash();
         head = latest.getHash();
-        branchPointer.put(currentBranch, latest);
-        commits.put(head, latest);
+        commits.put(latest);
         commitSer();
+        index.write();
     }
 
-    /** Helps for deserialization of commit. */
+    /** Reads the current branch and the head commit it points to. */
     public void commitDeser() {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
-        head = (String) deserialize(".gitlet/head");
-        currentBranch = (String) deserialize(".gitlet/currentBranch");
-        branchPointer = (HashMap<String, Commit>)
-                deserialize(".gitlet/branchPointers");
+        currentBranch = refs.currentBranch();
+        head = refs.branch(currentBranch);
     }
 
-    /** Helps for serialization of commit. */
+    /** Points the current branch at the head commit. */
     public void commitSer() {
-        serialize("branchPointers", branchPointer);
-        serialize("currentBranch", currentBranch);
-        serialize("commits", commits);
-        serialize("head", head);
-    }
-
-    /** Helper method that tracks a FILE by moving it from stagingArea
-     *  to trackedFiles. */
-    public void trackFiles(String file) {
-        File stagedFile = new File(".gitlet/stagingArea/" + file);
-        File trackedFile = new File(".gitlet/trackedFiles/" + file);
-        byte[] fileByteStream = Utils.readContents(stagedFile);
-        Utils.writeContents(trackedFile, fileByteStream);
-        stagedFile.delete();
+        refs.setBranch(currentBranch, head);
     }
 
     /** Remove the file FILENAME from the working directory if it was tracked in
@@ -179,106 +145,245 @@ public class FileStructure {
      *  but don't remove it from the working directory unless it was tracked
      *  in the current commit.. */
     public void remove(String fileName) {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
         Commit latest = getHead();
-        ArrayList<byte[]> trackedFiles = latest.getFileBytes();
-        File targetFile;
-        File removed;
-        if (!Utils.plainFilenamesIn(".").contains(fileName)
-                && latest.getFileData().containsKey(fileName)) {
-            removed = new File(".gitlet/" + latest.getFileData().get(fileName));
-            byte[] fileByteStream = Utils.readContents(removed);
-            File destination = new File(".gitlet/removedFiles/" + fileName);
-            Utils.writeContents(destination, fileByteStream);
-        }
-        if (Utils.plainFilenamesIn(".gitlet/trackedFiles").contains(fileName)) {
-            targetFile = new File(fileName);
-            try {
-                removed = new File(".gitlet/removedFiles/" + fileName);
-                byte[] fileByteStream = Utils.readContents(targetFile);
-                Utils.writeContents(removed, fileByteStream);
-            } catch (IllegalArgumentException e) {
-                System.err.println("No reason to remove the file.");
-            }
-            trackedFiles.remove(fileName);
-            targetFile.delete();
-        } else if (Utils.plainFilenamesIn(".gitlet/stagingArea")
-                .contains(fileName)) {
-            targetFile = new File(".gitlet/stagingArea/" + fileName);
-            targetFile.delete();
-        } else {
+        Index index = getIndex();
+        Index.Entry entry = index.get(fileName);
+        boolean staged = entry != null && entry.getState() == Index.ADDED;
+        String trackedHash = latest.getFileHash(fileName);
+        if (!staged && trackedHash == null) {
             System.err.println("No reason to remove the file.");
+            return;
+        }
+        if (trackedHash != null) {
+            index.put(fileName, trackedHash, Index.REMOVED, null);
+            new File(fileName).delete();
+        } else {
+            index.remove(fileName);
         }
-        commits.put(head, latest);
-        serialize("commits", commits);
-        serialize("head", head);
+        index.write();
     }
 
 
-    /** Prints a log of this branch. */
-    public void log() {
-        Commit c = getHead();
-        while (c != null) {
-            System.out.println("===");
-            System.out.println("Commit " + c.getHash());
-            System.out.println(c.getDateTime());
-            System.out.println(c.getMessage());
-            System.out.println();
-            c = c.getParent();
+    /** Prints a log of this branch, as limited and formatted by ARGS (see
+     *  LogWriter.parse). */
+    public void log(String... args) {
+        head = refs.head();
+        LogWriter writer = new LogWriter(commits.graph(), commits.messages());
+        if (!writer.parse(args, false)) {
+            System.out.println("Incorrect operands.");
+            return;
         }
+        writer.log(commits.graph().find(head));
     }
 
-    /** Prints a global log of all commits. **/
-    public void gLog() {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
-        Enumeration e = commits.elements();
-        while (e.hasMoreElements()) {
-            printCommit((Commit) e.nextElement());
+    /** Prints a global log of all commits, as ordered, limited and
+     *  formatted by ARGS (see LogWriter.parse). **/
+    public void gLog(String... args) {
+        LogWriter writer = new LogWriter(commits.graph(), commits.messages());
+        if (!writer.parse(args, true)) {
+            System.out.println("Incorrect operands.");
+            return;
         }
-    }
-
-    /** Prints a single commit C. **/
-    private void printCommit(Commit c) {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
-        System.out.println("===");
-        System.out.println("Commit " + c.getHash());
-        System.out.println(c.getDateTime());
-        System.out.println(c.getMessage());
-        System.out.println();
-    }
-
-    /** Prints out the ids of all commits with given commit
-     *  MESSAGE. */
-    public void find(String message) {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
-        Enumeration e = commits.elements();
-        int counter = 0;
-        while (e.hasMoreElements()) {
-            Commit c = (Commit) e.nextElement();
-            if (c.getMessage().equals(message)) {
-                System.out.println(c.getHash());
-                counter += 1;
+        writer.globalLog();
+    }
+
+    /** Prints out the ids of all commits matching ARGS, oldest first.  ARGS
+     *  is a message, optionally preceded by --words (match commits whose
+     *  messages contain every word of it), --substring or --regex (match
+     *  messages containing it, or a match of it), and by --since DATE and
+     *  --until DATE, where a DATE is yyyy-MM-dd or yyyy-MM-dd HH:mm:ss.  The
+     *  message may be left out when a date is given.  By default, messages
+     *  must equal the message exactly.  The search is answered from the
+     *  message index, without loading any commits. */
+    public void find(String... args) {
+        int mode = MessageIndex.EXACT;
+        long since = Long.MIN_VALUE, until = Long.MAX_VALUE;
+        String message = null;
+        for (int i = 0; i < args.length; i += 1) {
+            switch (args[i]) {
+            case "--words":
+                mode = MessageIndex.WORDS; break;
+            case "--substring":
+                mode = MessageIndex.SUBSTRING; break;
+            case "--regex":
+                mode = MessageIndex.REGEX; break;
+            case "--since":
+            case "--until":
+                Date date = null;
+                if (i + 1 < args.length) {
+                    date = parseDate(args[i + 1]);
+                }
+                if (date == null) {
+                    System.out.println("Incorrect operands.");
+                    return;
+                }
+                if (args[i].equals("--since")) {
+                    since = date.getTime();
+                } else if (args[i + 1].length() == DAY_FORMAT.length()) {
+                    until = date.getTime() + TimeUnit.DAYS.toMillis(1) - 1;
+                } else {
+                    until = date.getTime();
+                }
+                i += 1;
+                break;
+            default:
+                if (message != null) {
+                    System.out.println("Incorrect operands.");
+                    return;
+                }
+                message = args[i];
             }
         }
-        if (counter == 0) {
+        if (message == null && since == Long.MIN_VALUE
+            && until == Long.MAX_VALUE) {
+            System.err.println("Please enter a message to find.");
+            return;
+        }
+        List<String> found;
+        try {
+            found = commits.find(message, mode, since, until);
+        } catch (PatternSyntaxException excp) {
+            System.out.println("Invalid regular expression.");
+            return;
+        }
+        for (String id : found) {
+            System.out.println(id);
+        }
+        if (found.isEmpty()) {
             System.out.println("Found no commit with that message.");
         }
     }
 
+    /** Returns the date written in TEXT as yyyy-MM-dd HH:mm:ss or
+     *  yyyy-MM-dd, or null if it is neither. */
+    private static Date parseDate(String text) {
+        String format = text.length() == DAY_FORMAT.length()
+            ? DAY_FORMAT : DAY_FORMAT + " HH:mm:ss";
+        SimpleDateFormat parser = new SimpleDateFormat(format);
+        parser.setLenient(false);
+        ParsePosition pos = new ParsePosition(0);
+        Date result = parser.parse(text, pos);
+        return pos.getIndex() == text.length() ? result : null;
+    }
+
+    /** Format of a date given to find without a time. */
+    private static final String DAY_FORMAT = "yyyy-MM-dd";
+
     /** Displays what branches currently exist, and marks the current
      *  branch with a *. Also displays what files have been staged or marked
      *  for untracking. */
     public void status() {
-        branchPointer = (HashMap<String, Commit>)
-                deserialize(".gitlet/branchPointers");
-        printBranches(branchPointer);
-        printStatus("Staged Files",
-                Utils.plainFilenamesIn(".gitlet/stagingArea"));
-        printStatus("Removed Files",
-                Utils.plainFilenamesIn(".gitlet/removedFiles"));
+        printBranches(refs.branches());
+        Index index = getIndex();
+        printStatus("Staged Files", index.staged());
+        printStatus("Removed Files", index.removed());
         printStatus("Modifications Not Staged For Commit",
-                new ArrayList<>());
-        printStatus("Untracked Files", new ArrayList<>());
+                index.modifications());
+        printStatus("Untracked Files",
+                index.untracked(workingFiles()));
+        index.write();
+    }
+
+    /** Prints, as unified diffs, the changes in the working files since
+     *  they were staged or committed when ARGS is empty, the changes staged
+     *  for the next commit when ARGS is --cached (or --staged), the changes
+     *  in the working files since commit ARGS[0], or the changes from
+     *  commit ARGS[0] to commit ARGS[1].  Commits are named by branch or by
+     *  id, which may be abbreviated.  Files whose versions have the same id
+     *  are skipped unread, and the trees of two commits are compared only
+     *  where their ids differ. */
+    public void diff(String... args) {
+        try (Trace.Phase p = Trace.phase("diff");
+             DiffWriter out = new DiffWriter(ObjectStore.instance())) {
+            Index index = getIndex();
+            if (args.length == 0) {
+                for (Index.Entry entry : index.entries()) {
+                    if (entry.getState() != Index.REMOVED) {
+                        out.file(entry.getPath(), indexed(entry),
+                                 working(index, entry.getPath()));
+                    }
+                }
+            } else if (args.length == 1 && (args[0].equals("--cached")
+                                            || args[0].equals("--staged"))) {
+                Commit c = getHead();
+                for (Index.Entry entry : index.entries()) {
+                    String path = entry.getPath();
+                    if (entry.getState() != Index.TRACKED) {
+                        out.file(path, DiffWriter.Version.blob(
+                                     c.getFileHash(path)),
+                                 indexed(entry));
+                    }
+                }
+            } else if (args.length == 1) {
+                Commit c = namedCommit(args[0]);
+                if (c == null) {
+                    return;
+                }
+                TreeSet<String> paths = new TreeSet<>(c.getFileNames());
+                for (Index.Entry entry : index.entries()) {
+                    if (entry.getState() != Index.REMOVED) {
+                        paths.add(entry.getPath());
+                    }
+                }
+                for (String path : paths) {
+                    out.file(path, DiffWriter.Version.blob(
+                                 c.getFileHash(path)),
+                             working(index, path));
+                }
+            } else if (args.length == 2) {
+                Commit a = namedCommit(args[0]), b = namedCommit(args[1]);
+                if (a == null || b == null) {
+                    return;
+                }
+                for (Map.Entry<String, String> e : a.diff(b).entrySet()) {
+                    out.file(e.getKey(),
+                             DiffWriter.Version.blob(
+                                 a.getFileHash(e.getKey())),
+                             DiffWriter.Version.blob(e.getValue()));
+                }
+            } else {
+                System.out.println("Incorrect operands.");
+            }
+            index.write();
+        }
+    }
+
+    /** Returns the version of ENTRY's file recorded in the index, which is
+     *  always a blob of the object store. */
+    private static DiffWriter.Version indexed(Index.Entry entry) {
+        return DiffWriter.Version.blob(entry.getId());
+    }
+
+    /** Returns the version of the working file PATH, or null if there is
+     *  none.  Its id is taken from INDEX when its stat data show it to be
+     *  unchanged, and is otherwise found by hashing it; an entry found
+     *  unchanged after all has its stat data refreshed. */
+    private static DiffWriter.Version working(Index index, String path) {
+        Index.Entry stat = Index.stat(path);
+        if (stat == null) {
+            return null;
+        }
+        File file = new File(path);
+        Index.Entry entry = index.get(path);
+        if (entry != null && entry.getState() != Index.REMOVED) {
+            if (index.isClean(entry, stat)) {
+                return DiffWriter.Version.file(entry.getId(), file);
+            }
+            String id = Utils.sha1(file);
+            if (id.equals(entry.getId())) {
+                index.put(path, id, entry.getState(), stat);
+            }
+            return DiffWriter.Version.file(id, file);
+        }
+        return DiffWriter.Version.file(Utils.sha1(file), file);
+    }
+
+    /** Returns the commit at the head of branch NAME, or else the commit
+     *  whose id is or begins with NAME, after printing an error and
+     *  returning null if there is none. */
+    private Commit namedCommit(String name) {
+        String id = refs.branch(name);
+        return id == null ? findCommit(name) : commits.get(id);
     }
 
     /** Helper function for status that prints out the TITLE and the files
@@ -292,16 +397,12 @@ public class FileStructure {
         System.out.println();
     }
 
-    /** Helper function for status that prints out the branches from
-     * the HashMap of BRANCHES that is passed in. */
-    public void printBranches(HashMap branches) {
-        currentBranch = (String) deserialize(".gitlet/currentBranch");
+    /** Helper function for status that prints out the sorted names of
+     * BRANCHES that are passed in. */
+    public void printBranches(List<String> branches) {
+        currentBranch = refs.currentBranch();
         System.out.println("=== Branches ===");
-        Set<String> s = branches.keySet();
-        ArrayList<String> answer = new ArrayList<>();
-        answer.addAll(s);
-        Collections.sort(answer);
-        for (String key: answer) {
+        for (String key: branches) {
             if (key.equals(currentBranch)) {
                 System.out.println("*" + key);
             } else {
@@ -314,244 +415,204 @@ public class FileStructure {
     /** Takes the version of the FILENAME as it exists in the head commit, the
      *  front of the current branch, and puts it in the working directory. */
     public void fileCheckout(String fileName) {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
-        head = (String) deserialize(".gitlet/head");
-        currentBranch = (String) deserialize(".gitlet/currentBranch");
-        Commit c = commits.get(head);
-        ArrayList<String> files = c.getFileNames();
-        if (!files.contains(fileName)) {
+        BlobHandle blob = getHead().getBlob(fileName);
+        if (blob == null) {
             System.out.println("File does not exist in that commit.");
             return;
-        } else {
-            File sourceFile = new File(".gitlet/trackedFiles/" + fileName);
-            File targetFile = new File(fileName);
-            byte[] sourceBytes = Utils.readContents(sourceFile);
-            Utils.writeContents(targetFile, sourceBytes);
         }
+        blob.copyTo(new File(fileName));
     }
 
     /** Takes the version of the FILENAME as it exists in the commit with the
-     *  given COMMITID, and puts it in the working directory, overwriting the
-     *  version of the file that's already there if there is one. */
+     *  given COMMITID, which may be abbreviated, and puts it in the working
+     *  directory, overwriting the version of the file that's already there
+     *  if there is one. */
     public void checkout(String commitID, String fileName) {
-        commits = (Hashtable<String, Commit>) deserialize(".gitlet/commits");
-        Commit c;
-        c = commits.get(commitID);
+        Commit c = findCommit(commitID);
         if (c == null) {
-            System.err.println("No commit with that id exists.");
             return;
         }
-        ArrayList<byte[]> fileBytes = c.getFileBytes();
-        ArrayList<String> files = c.getFileNames();
-        int i = files.indexOf(fileName);
-        if (i == -1) {
+        BlobHandle blob = c.getBlob(fileName);
+        if (blob == null) {
             System.err.println("File does not exist in that commit.");
             return;
         }
-        byte[] newBytes = fileBytes.get(i);
-        File targetFile = new File(fileName);
-        Utils.writeContents(targetFile, newBytes);
-
+        blob.copyTo(new File(fileName));
     }
 
     /** Takes all files in the commit at the head of the given BRANCHNAME, and
      *  puts them in the working directory, overwriting the versions of the
-     *  files that are already there if they exist. */
+     *  files that are already there if they exist.  Only the files that
+     *  differ between the current and given commits are touched. */
     public void branchCheckout(String branchName) {
-        branchPointer = (HashMap<String, Commit>)
-                deserialize(".gitlet/branchPointers");
-        currentBranch = (String) deserialize(".gitlet/currentBranch");
-        head = (String) deserialize(".gitlet/head");
+        commitDeser();
         if (branchName.equals(currentBranch)) {
             System.out.println("No need to "
                     + "checkout the current branch.");
             return;
         }
-        Commit newCommit;
-        newCommit = branchPointer.get(branchName);
+        Commit newCommit = commits.get(refs.branch(branchName));
         if (newCommit == null) {
             System.err.println("No such branch exists.");
             return;
         }
-        ArrayList<String> newFiles = new ArrayList<>();
-        newFiles.addAll(newCommit.getFileNames());
-        ArrayList<byte[]> newFileBytes = new ArrayList<>();
-        newFileBytes.addAll(newCommit.getFileBytes());
-        Commit currentCommit = branchPointer.get(currentBranch);
-        ArrayList<String> currentFiles = new ArrayList<>();
-        currentFiles.addAll(currentCommit.getFileNames());
-        File tempFile;
-        byte[] tempBytes;
-        if (branchContainsUntracked(branchName)) {
+        Checkout checkout = new Checkout(commits.get(head), newCommit);
+        if (checkout.untrackedInTheWay() != null) {
             System.out.println("There is an untracked file in the way;"
                     + " delete it or add it first.");
             return;
         } else {
-            File deleteFile;
-            for (String s : currentFiles) {
-                if (!newFiles.contains(s)) {
-                    deleteFile = new File(s);
-                    deleteFile.delete();
-                }
-            }
-            for (int i = 0; i < newFiles.size(); i++) {
-                tempFile = new File(newFiles.get(i));
-                tempBytes = newFileBytes.get(i);
-                Utils.writeContents(tempFile, tempBytes);
-            }
-            clearStagingArea();
+            checkout.run(getIndex());
         }
         currentBranch = branchName;
         head = newCommit.getHash();
-        serialize("currentBranch", currentBranch);
-        serialize("head", head);
+        refs.setCurrentBranch(currentBranch);
     }
 
     /** Returns true if a working file is untracked in the current branch
      *  and would be overwritten by the checkout of BRANCHNAME. */
     public boolean branchContainsUntracked(String branchName) {
-        currentBranch = (String) deserialize(".gitlet/currentBranch");
-        Commit currComm = branchPointer.get(currentBranch);
-        Commit newComm = branchPointer.get(branchName);
-
-        ArrayList<String> currFiles = currComm.getFileNames();
-        ArrayList<String> newFiles = newComm.getFileNames();
-        for (String s : Utils.plainFilenamesIn(".")) {
-            if (!currFiles.contains(s) && newFiles.contains(s)) {
-                return true;
-            }
+        Commit currComm = getHead();
+        Commit newComm = commits.get(refs.branch(branchName));
+        if (newComm == null) {
+            return false;
+        }
+        return new Checkout(currComm, newComm).untrackedInTheWay() != null;
+    }
+
+    /** Returns the paths, relative to the working directory, of all files
+     *  in the working directory and its subdirectories, other than those
+     *  of the repository itself. */
+    static List<String> workingFiles() {
+        return Stager.expand(Collections.singletonList("."),
+                             new ArrayList<>());
+    }
+
+    /** Deletes the working file PATH and any directories that deleting it
+     *  leaves empty. */
+    static void deleteWorkingFile(String path) {
+        File file = new File(path);
+        file.delete();
+        File dir = file.getParentFile();
+        while (dir != null && dir.delete()) {
+            dir = dir.getParentFile();
         }
-        return false;
     }
 
-    /** Clears the staging area of all files. */
-    public void clearStagingArea() {
-        File stage;
-        for (String s : Utils.plainFilenamesIn(".gitlet/stagingArea")) {
-            stage = new File(s);
-            stage.delete();
+    /** Returns the index, reading it the first time it is needed.  A
+     *  repository without an index file gets one describing its head
+     *  commit. */
+    public Index getIndex() {
+        if (index == null) {
+            index = new Index(new File(".gitlet/index"));
+            if (!index.exists()) {
+                Commit c = getHead();
+                for (String name : c.getFileNames()) {
+                    index.put(name, c.getFileHash(name), Index.TRACKED,
+                              null);
+                }
+            }
         }
+        return index;
     }
 
     /** Return the head pointer. **/
     public Commit getHead() {
-        commits = (Hashtable<String, Commit>)
-                deserialize(".gitlet/commits");
-        head = (String) deserialize(".gitlet/head");
+        head = refs.head();
         return commits.get(head);
     }
 
     /** Creates a new branch named BRANCHNAME, and points it at the
-     *  current head node. */
+     *  current head node.  Only the new branch's ref is written. */
     public void branch(String branchName) {
-        branchPointer = (HashMap<String, Commit>)
-                deserialize(".gitlet/branchPointers");
-        if (branchPointer != null) {
-            if (branchPointer.containsKey(branchName)) {
-                System.out.println("A branch with that name already exists.");
-                return;
-            } else {
-                branchPointer.put(branchName, getHead());
-            }
+        if (!Refs.isValidName(branchName)) {
+            System.out.println("Invalid branch name.");
+        } else if (refs.branch(branchName) != null) {
+            System.out.println("A branch with that name already exists.");
         } else {
-            branchPointer.put(branchName, getHead());
+            refs.setBranch(branchName, refs.head());
         }
-        serialize("branchPointers", branchPointer);
     }
 
     /** Deletes the branch BR. */
     public void rmBranch(String br) {
-        branchPointer = (HashMap<String, Commit>)
-                deserialize(".gitlet/branchPointers");
-        if (!branchPointer.containsKey(br)) {
+        if (refs.branch(br) == null) {
             System.out.println("A branch with that name does not exist.");
-            return;
-        } else if (br.equals(currentBranch)) {
+        } else if (br.equals(refs.currentBranch())) {
             System.out.println("Cannot remove the current branch.");
-            return;
         } else {
-            branchPointer.remove(br);
+            refs.deleteBranch(br);
         }
-        serialize("branchPointers", branchPointer);
     }
 
-    /**  Checks out all the files tracked by the given COMMITID. Removes tracked
-     *  files that are not present in the given file. Also moves the current
-     *  branch's head to that commit node. */
+    /**  Checks out all the files tracked by the given COMMITID, which may be
+     *  abbreviated. Removes tracked files that are not present in the given
+     *  file. Also moves the current branch's head to that commit node. */
     public void reset(String commitID) {
-        commits = (Hashtable<String, Commit>)
-                deserialize(".gitlet/commits");
-        head = (String) deserialize(".gitlet/head");
-        Commit c;
-        try {
-            c = commits.get(commitID);
-        } catch (NullPointerException e) {
-            System.err.println("No commit with that id exists.");
+        commitDeser();
+        Commit c = findCommit(commitID);
+        if (c == null) {
             return;
         }
-        if (resetContainsUntracked(commitID)) {
+        commitID = c.getHash();
+        Checkout checkout = new Checkout(commits.get(head), c);
+        if (checkout.untrackedInTheWay() != null) {
             System.out.println("There is an untracked file in the way;"
                     + " delete it or add it first.");
             return;
         }
-        HashMap<String, String> files = c.getFileData();
-        for (String name : files.keySet()) {
-            checkout(commitID, name);
+        checkout.run(getIndex());
+        head = c.getHash();
+        commitSer();
+    }
+
+    /** Returns the commit whose id is or begins with COMMITID, after
+     *  printing an error and returning null if there is no such commit or
+     *  if the abbreviation is ambiguous. */
+    private Commit findCommit(String commitID) {
+        String id;
+        try {
+            id = commits.resolve(commitID);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return null;
         }
-        File deleteFile;
-        for (String name : Utils.plainFilenamesIn(".gitlet/trackedFiles")) {
-            if (!files.keySet().contains(name)) {
-                deleteFile = new File(".gitlet/trackedFiles/" + name);
-                deleteFile.delete();
-            }
+        Commit result = id == null ? null : commits.get(id);
+        if (result == null) {
+            System.err.println("No commit with that id exists.");
         }
-        head = c.getHash();
-        clearStagingArea();
+        return result;
     }
 
     /** Returns true if a working file is untracked in the current commit
      *  and would be overwritten by the reset of COMMITID. */
     public boolean resetContainsUntracked(String commitID) {
-        Commit currComm = commits.get(head);
-        Commit newComm = commits.get(commitID);
-        ArrayList<String> currFiles = currComm.getFileNames();
-        ArrayList<String> newFiles = newComm.getFileNames();
-        for (String s : Utils.plainFilenamesIn(".")) {
-            if (!currFiles.contains(s) && newFiles.contains(s)) {
-                return true;
-            }
-        }
-        return false;
+        return new Checkout(commits.get(head), commits.get(commitID))
+            .untrackedInTheWay() != null;
     }
 
     /** Return the current branch BR. */
     public Commit getCurrentBranch() {
-        branchPointer = (HashMap<String, Commit>)
-                deserialize(".gitlet/branchPointers");
-        currentBranch = (String) deserialize(".gitlet/currentBranch");
-        return branchPointer.get(currentBranch);
+        commitDeser();
+        return commits.get(head);
     }
 
     /** Set currentBranch as BRANCH. **/
     public void setCurrentBranch(String branch) {
-        currentBranch = (String) deserialize(".gitlet/currentBranch");
         currentBranch = branch;
-        serialize("currentBranch", branch);
+        refs.setCurrentBranch(branch);
     }
 
     /** Returns true iff merge errors for GB. */
     public boolean mergeErrors(String gb) {
-        branchPointer = (HashMap<String, Commit>)
-                deserialize(".gitlet/branchPointers");
         if (branchContainsUntracked(gb)) {
             System.out.println("There is an untracked file in the way; "
                     + "delete it or add it first.");
             return false;
-        } else if (!Utils.plainFilenamesIn(".gitlet/stagingArea").isEmpty()
-                || !Utils.plainFilenamesIn(".gitlet/removedFiles").isEmpty()) {
+        } else if (getIndex().hasStagedChanges()) {
             System.out.println("You have uncommitted changes.");
             return false;
-        } else if (!branchPointer.containsKey(gb)) {
+        } else if (refs.branch(gb) == null) {
             System.out.println("A branch with that name does not exist.");
             return false;
         }
@@ -564,17 +625,18 @@ public class FileStructure {
             return;
         }
         boolean co = false;
-        Commit gb = branchPointer.get(givenBranch);
+        Commit gb = commits.get(refs.branch(givenBranch));
         Commit cb = getCurrentBranch();
-        if (gb.isEquals(cb)) {
+        if (gb.getHash().equals(cb.getHash())) {
             System.out.println("Cannot merge a branch with itself.");
+            return;
         }
         Commit sp = findSplitPoint(cb, gb);
-        if (sp.isEquals(gb)) {
+        if (sp.getHash().equals(gb.getHash())) {
             System.out.println("Given branch is an "
                     + "ancestor of the current branch.");
             return;
-        } else if (sp.isEquals(getCurrentBranch())) {
+        } else if (sp.getHash().equals(cb.getHash())) {
             setCurrentBranch(givenBranch);
             System.out.println("Current branch fast-forwarded."); return;
         } else {
@@ -587,19 +649,17 @@ public class FileStructure {
                         }
                     } else if (!sameFile(f, sp, cb)) {
                         if (!sameFile(f, sp, gb) && !sameFile(f, cb, gb)) {
-                            co = true;
-                            conflictHelper(f, cb, gb);
+                            co |= conflictHelper(f, sp, cb, gb);
                         }
                     }
                 } else if (cb.containsFile(f)) {
                     if (!sameFile(f, sp, cb)) {
-                        co = true;
-                        conflictHelper(f, cb, gb);
+                        co |= conflictHelper(f, sp, cb, gb);
                     } else {
                         remove(f);
                     }
                 } else if (gb.containsFile(f) && !sameFile(f, sp, gb)) {
-                    co = true; conflictHelper(f, sp, cb);
+                    co |= conflictHelper(f, sp, cb, gb);
                 }
             }
             HashSet<String> cbUniqueFileNames = new HashSet<>();
@@ -607,7 +667,7 @@ public class FileStructure {
             cbUniqueFileNames.removeAll(sp.getFileData().keySet());
             for (String fn : cbUniqueFileNames) {
                 if (gb.containsFile(fn) && (!sameFile(fn, cb, gb))) {
-                    co = true; conflictHelper(fn, cb, gb);
+                    co |= conflictHelper(fn, sp, cb, gb);
                 }
             }
             HashSet<String> gbUniqueFileNames = new HashSet<>();
@@ -617,54 +677,51 @@ public class FileStructure {
                 checkout(gb.getHash(), fn); add(fn);
             }
         }
-        printCon(co, givenBranch);
+        printCon(co, givenBranch, gb);
     }
 
-    /** Print statements for C, GB if conflicted. */
-    public void printCon(boolean c, String gb) {
+    /** Print statements for C, GB if conflicted, and otherwise commit the
+     *  merge of the commit MERGED at the head of GB. */
+    public void printCon(boolean c, String gb, Commit merged) {
         if (c) {
             System.out.println("Encountered a merge conflict.");
             return;
         } else {
-            commit("Merged " + currentBranch + " with " + gb + ".");
+            commit("Merged " + currentBranch + " with " + gb + ".", merged);
             return;
         }
     }
 
-    /** Helper method, taking a FLNM,
-     * CBRANCH, GIVENBRANCH. */
-    void conflictHelper(String flNm, Commit cBranch, Commit givenBranch) {
-        byte[] currentBytes = null;
-        if (cBranch.containsFile(flNm)) {
-            currentBytes = cBranch.getBytesByFileName(flNm);
-        }
-        byte[] givenBytes = null;
-        if (givenBranch.containsFile(flNm)) {
-            givenBytes = givenBranch.getBytesByFileName(flNm);
-        }
-        StringBuilder sb = new StringBuilder();
-        sb.append("<<<<<<< HEAD\n");
-        if (currentBytes != null) {
-            sb.append(new String(currentBytes));
-            sb.append("\n");
-        } else {
-            sb.append("\n");
-        }
-        sb.append("=======\n");
-        if (givenBytes != null) {
-            sb.append(new String(givenBytes));
-        } else {
-            sb.append("\n");
-        }
-        sb.append(">>>>>>>");
-        String s = sb.toString();
-        byte[] newBytes = s.getBytes();
-        try {
-            File f = new File(".gitlet/" + cBranch.getFileHash(flNm));
-            Utils.writeContents(f, newBytes);
-        } catch (IOError e) {
+    /** Merges the changes made to file FLNM since commit SPLIT by
+     *  CBRANCH and by GIVENBRANCH, line by line, into the working file.
+     *  Conflicting regions are written between conflict markers; a file
+     *  merged without conflicts is staged.  Returns true iff there was a
+     *  conflict. */
+    boolean conflictHelper(String flNm, Commit split, Commit cBranch,
+                           Commit givenBranch) {
+        boolean conflicted;
+        File file = new File(flNm);
+        File parent = file.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        try (OutputStream out = new BufferedOutputStream(
+                 new FileOutputStream(file))) {
+            conflicted = Merger.merge(contents(split, flNm),
+                                      contents(cBranch, flNm),
+                                      contents(givenBranch, flNm), out);
+        } catch (IOException e) {
             System.out.println("Error with writing to files.");
+            return true;
+        }
+        if (!conflicted) {
+            add(flNm);
         }
+        return conflicted;
+    }
+
+    /** Returns the contents of file NAME in commit C, or null if C does
+     *  not have it. */
+    private static byte[] contents(Commit c, String name) {
+        return c.containsFile(name) ? c.getBytesByFileName(name) : null;
     }
 
     /** Returns true iff contents FILENAME are the same in A and B. */
@@ -672,66 +729,104 @@ public class FileStructure {
         return (a.getFileHash(fileName).equals(b.getFileHash(fileName)));
     }
 
-    /** Returns splitpoint between commit A and B. */
+    /** Returns splitpoint between commit A and B: their latest common
+     *  ancestor, found through the generation numbers of the commit graph
+     *  rather than by comparing dates. */
     public static Commit findSplitPoint(Commit a, Commit b) {
-        if (a.isEquals(b)) {
-            return a;
-        } else if (a.isInit()) {
-            return a;
-        } else if (b.isInit()) {
-            return b;
-        } else if (a.before(b)) {
-            return findSplitPoint(a, b.getParent());
-        }   else if (b.before(a)) {
-            return findSplitPoint(a.getParent(), b);
-        } else {
-            System.out.println(a + "/n" + b);
-            System.out.println("There is some big error.");
-            throw new Error();
+        try (Trace.Phase p = Trace.phase("merge base")) {
+            CommitStore store = CommitStore.instance();
+            return store.get(store.mergeBase(a.getHash(), b.getHash()));
+        }
+    }
+
+    /** Collects the garbage of the repository (see Pruner): packs the
+     *  objects reachable from a branch, HEAD or the index into a single
+     *  packfile, storing versions of the same file as deltas against one
+     *  another, saves the bitmaps of the objects reachable from each
+     *  branch, and deletes unreachable objects, commits among them, older
+     *  than the grace period, which ARGS may set to --prune=now or
+     *  --prune=SECONDS.  Deleted commits are dropped from the commit log,
+     *  graph and message index.  The directories of
+     *  copies of tracked and staged files kept by older versions of gitlet
+     *  are deleted, and the branch refs are packed into packed-refs. */
+    public void gc(String... args) {
+        long grace = Pruner.GRACE;
+        if (args.length == 1 && args[0].matches("--prune=(now|\\d{1,12})")) {
+            String value = args[0].substring("--prune=".length());
+            grace = value.equals("now")
+                ? 0 : TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        } else if (args.length > 0) {
+            System.out.println("Incorrect operands.");
+            return;
         }
+        Index index = getIndex();
+        new Pruner(commits, refs, ObjectStore.instance()).run(index, grace);
+        Utils.deleteTree(new File(".gitlet/trackedFiles"));
+        Utils.deleteTree(new File(".gitlet/stagingArea"));
+        refs.pack();
     }
 
-    /** Serialize all objects OBJ to a file with name FOS. */
+    /** Prints the number of objects reachable from the branch ARGS[0], or
+     *  from the current branch if ARGS is empty.  The count is answered
+     *  from the bitmaps saved by gc, walking only commits made since. */
+    public void countObjects(String... args) {
+        if (args.length > 1) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        String tip = args.length == 0 ? refs.head() : refs.branch(args[0]);
+        if (tip == null) {
+            System.out.println("A branch with that name does not exist.");
+            return;
+        }
+        System.out.println(new Pruner(commits, refs, ObjectStore.instance())
+                           .count(tip) + " objects");
+    }
+
+    /** Serialize all objects OBJ to a file with name FOS, as part of the
+     *  current command's transaction. */
     public void serialize(String fos, Object... obj) {
-        try {
-            FileOutputStream fileStream;
-            fileStream = new FileOutputStream(".gitlet/" + fos);
-            ObjectOutputStream os = new ObjectOutputStream(fileStream);
-            for (Object o : obj) {
-                os.writeObject(o);
+        try (Trace.Phase p = Trace.phase("serialize")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream os = new ObjectOutputStream(bytes)) {
+                for (Object o : obj) {
+                    os.writeObject(o);
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
             }
-            os.close();
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
+            Transaction.instance().write(".gitlet/" + fos, bytes.toByteArray());
         }
     }
 
-    /** Return deserialize objects of the file FIS. */
+    /** Return deserialize objects of the file FIS, as the current
+     *  command's transaction has left it. */
     public Object deserialize(String fis) {
-        try {
-            FileInputStream fileStream = new FileInputStream(fis);
-            ObjectInputStream os;
-            os = new ObjectInputStream(fileStream);
-            try {
-                Object obj = os.readObject();
-                os.close();
-                return obj;
-            } catch (ClassNotFoundException e) {
+        try (Trace.Phase p = Trace.phase("deserialize")) {
+            byte[] bytes = Transaction.instance().read(fis);
+            if (bytes == null) {
+                System.err.println(fis + " (No such file or directory)");
+                return null;
+            }
+            try (ObjectInputStream os =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return os.readObject();
+            } catch (IOException | ClassNotFoundException e) {
                 System.err.println(e.getMessage());
                 return null;
             }
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
-            return null;
         }
     }
 
-    /** HashMap keeping track of our branhces. **/
-    private  HashMap<String, Commit> branchPointer = new HashMap<>();
-    /** Hashtable of commits. **/
-    private  Hashtable<String, Commit> commits = new Hashtable<>();
+    /** The branches of the repository. **/
+    private  Refs refs = Refs.instance();
+    /** The commits of the repository, read as they are needed. **/
+    private  CommitStore commits = CommitStore.instance();
     /** Identifies current branch by name. **/
     private  String currentBranch;
     /** String identifying head pointer. **/
     private  String head;
+    /** The index of staged and tracked files, once it has been read. **/
+    private  Index index;
 }
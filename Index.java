@@ -0,0 +1,375 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/** The index of a gitlet repository: one binary file recording, for every
+ *  file that is tracked or staged, the id of its tracked or staged version,
+ *  whether it is staged for addition or removal, and the stat data (mode,
+ *  size, modification time and inode) the working file had when it was last
+ *  known to hold that version.  A file whose stat data still match need not
+ *  be read to know that it is unchanged.
+ *
+ *  The file starts with the magic bytes "GDIR", a version number and the
+ *  number of entries, followed by the entries in order of path and the
+ *  SHA-1 of everything before it.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Index {
+
+    /** State of a file tracked by the head commit and not staged. */
+    static final int TRACKED = 0;
+    /** State of a file staged for addition. */
+    static final int ADDED = 1;
+    /** State of a file staged for removal. */
+    static final int REMOVED = 2;
+
+    /** The index stored in FILE, which is empty if FILE does not exist. */
+    Index(File file) {
+        this.file = file;
+        if (file.isFile()) {
+            read();
+        }
+    }
+
+    /** Returns true iff this index has been written to its file. */
+    boolean exists() {
+        return file.isFile();
+    }
+
+    /** Returns the entry for PATH, or null if there is none. */
+    Entry get(String path) {
+        return entries.get(path);
+    }
+
+    /** Returns all entries, in order of path. */
+    Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    /** Records that PATH holds the version with the given ID in the given
+     *  STATE.  STAT, if not null, is the stat data of a working file known
+     *  to hold that version. */
+    void put(String path, String id, int state, Entry stat) {
+        Entry entry = new Entry(path);
+        if (stat != null) {
+            entry.mode = stat.mode;
+            entry.size = stat.size;
+            entry.mtime = stat.mtime;
+            entry.inode = stat.inode;
+        }
+        entry.id = id;
+        entry.state = state;
+        entries.put(path, entry);
+        changed = true;
+    }
+
+    /** Removes the entry for PATH, if any. */
+    void remove(String path) {
+        if (entries.remove(path) != null) {
+            changed = true;
+        }
+    }
+
+    /** Returns the paths of the files staged for addition, in order. */
+    List<String> staged() {
+        return pathsIn(ADDED);
+    }
+
+    /** Returns the paths of the files staged for removal, in order. */
+    List<String> removed() {
+        return pathsIn(REMOVED);
+    }
+
+    /** Returns true iff any file is staged for addition or removal. */
+    boolean hasStagedChanges() {
+        for (Entry entry : entries.values()) {
+            if (entry.state != TRACKED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true iff STAT, the current stat data of ENTRY's file, shows
+     *  that the file is certainly unchanged since ENTRY was recorded.  A
+     *  file modified in the same clock tick as the index was last written
+     *  is never trusted. */
+    boolean isClean(Entry entry, Entry stat) {
+        return stat != null && entry.mode == stat.mode
+            && entry.size == stat.size && entry.mtime == stat.mtime
+            && entry.inode == stat.inode && entry.mtime < written;
+    }
+
+    /** Returns the files whose working versions differ from their tracked
+     *  or staged versions, each followed by " (modified)" or " (deleted)".
+     *  Only files whose stat data have changed are read; those found to be
+     *  unchanged after all have their stat data refreshed. */
+    List<String> modifications() {
+        ArrayList<String> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.state == REMOVED) {
+                continue;
+            }
+            Entry stat = stat(entry.path);
+            if (stat == null) {
+                result.add(entry.path + " (deleted)");
+            } else if (!isClean(entry, stat)) {
+                if (Utils.sha1(new File(entry.path)).equals(entry.id)) {
+                    put(entry.path, entry.id, entry.state, stat);
+                } else {
+                    result.add(entry.path + " (modified)");
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns those of the working files FILES that are neither tracked nor
+     *  staged for addition. */
+    List<String> untracked(List<String> files) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String name : files) {
+            Entry entry = entries.get(name);
+            if (entry == null || entry.state == REMOVED) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Writes this index to its file if it has changed, replacing the file
+     *  atomically. */
+    void write() {
+        try (Trace.Phase p = Trace.phase("index write")) {
+            if (!changed && file.isFile()) {
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    out.writeUTF(entry.path);
+                    out.writeInt(entry.mode);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.mtime);
+                    out.writeLong(entry.inode);
+                    out.write(ObjectStore.toBytes(entry.id));
+                    out.writeByte(entry.state);
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            MessageDigest md = Utils.sha1Digest();
+            md.update(bytes.toByteArray());
+            try {
+                File temp = File.createTempFile("index", null,
+                                                file.getParentFile());
+                try (OutputStream out =
+                         new BufferedOutputStream(Files.newOutputStream(
+                             temp.toPath()))) {
+                    bytes.writeTo(out);
+                    out.write(md.digest());
+                }
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+                written = nanos(Files.getLastModifiedTime(file.toPath()));
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            changed = false;
+        }
+    }
+
+    /** Returns true iff this index has changes not yet written to its
+     *  file. */
+    boolean isChanged() {
+        return changed;
+    }
+
+    /** Returns the stat data of the working file PATH as an entry with no
+     *  id, or null if there is no such plain file. */
+    static Entry stat(String path) {
+        Trace.count(Trace.FILES_STATTED, 1);
+        Path p = new File(path).toPath();
+        Entry result = new Entry(path);
+        try {
+            Map<String, Object> attrs =
+                Files.readAttributes(p, "unix:mode,size,lastModifiedTime,ino");
+            int mode = (Integer) attrs.get("mode");
+            if ((mode & FILE_TYPE) != REGULAR) {
+                return null;
+            }
+            result.mode = (mode & EXECUTABLE) != 0
+                ? EXECUTABLE_FILE : REGULAR_FILE;
+            result.size = (Long) attrs.get("size");
+            result.mtime = nanos((FileTime) attrs.get("lastModifiedTime"));
+            result.inode = (Long) attrs.get("ino");
+        } catch (UnsupportedOperationException | IllegalArgumentException
+                 | ClassCastException excp) {
+            try {
+                BasicFileAttributes attrs =
+                    Files.readAttributes(p, BasicFileAttributes.class);
+                if (!attrs.isRegularFile()) {
+                    return null;
+                }
+                result.mode = p.toFile().canExecute()
+                    ? EXECUTABLE_FILE : REGULAR_FILE;
+                result.size = attrs.size();
+                result.mtime = nanos(attrs.lastModifiedTime());
+                result.inode = attrs.fileKey() == null
+                    ? 0 : attrs.fileKey().hashCode();
+            } catch (IOException e) {
+                return null;
+            }
+        } catch (IOException excp) {
+            return null;
+        }
+        return result;
+    }
+
+    /** Returns the paths of entries in the given STATE, in order. */
+    private List<String> pathsIn(int state) {
+        ArrayList<String> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.state == state) {
+                result.add(entry.path);
+            }
+        }
+        return result;
+    }
+
+    /** Reads the entries of this index from its file. */
+    private void read() {
+        try (Trace.Phase p = Trace.phase("index read")) {
+            try {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                int body = bytes.length - ObjectStore.ID_LENGTH;
+                MessageDigest md = Utils.sha1Digest();
+                md.update(bytes, 0, Math.max(body, 0));
+                if (body < 0
+                    || !Arrays.equals(md.digest(),
+                                      Arrays.copyOfRange(bytes, body,
+                                                         bytes.length))) {
+                    throw new IllegalArgumentException("corrupt index");
+                }
+                written = nanos(Files.getLastModifiedTime(file.toPath()));
+                InputStream raw = new ByteArrayInputStream(bytes, 0, body);
+                DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(raw));
+                byte[] magic = new byte[MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC) || in.readInt() != VERSION) {
+                    throw new IllegalArgumentException("corrupt index");
+                }
+                int count = in.readInt();
+                byte[] id = new byte[ObjectStore.ID_LENGTH];
+                for (int i = 0; i < count; i += 1) {
+                    Entry entry = new Entry(in.readUTF());
+                    entry.mode = in.readInt();
+                    entry.size = in.readLong();
+                    entry.mtime = in.readLong();
+                    entry.inode = in.readLong();
+                    in.readFully(id);
+                    entry.id = ObjectStore.toHex(id);
+                    entry.state = in.readByte();
+                    entries.put(entry.path, entry);
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException("corrupt index");
+            }
+        }
+    }
+
+    /** Returns TIME in nanoseconds since the epoch. */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /** The record of one file in the index. */
+    static class Entry {
+        /** An entry for PATH with no data. */
+        Entry(String path) {
+            this.path = path;
+        }
+
+        /** Returns the path of this entry's file. */
+        String getPath() {
+            return path;
+        }
+
+        /** Returns the id of the tracked or staged version. */
+        String getId() {
+            return id;
+        }
+
+        /** Returns the state of this entry: TRACKED, ADDED or REMOVED. */
+        int getState() {
+            return state;
+        }
+
+        /** The file's path. */
+        private final String path;
+        /** The file's mode. */
+        private int mode;
+        /** The file's size. */
+        private long size;
+        /** The file's modification time in nanoseconds. */
+        private long mtime;
+        /** The file's inode number. */
+        private long inode;
+        /** The id of the tracked or staged version of the file. */
+        private String id;
+        /** Whether the file is tracked, staged for addition or staged for
+         *  removal. */
+        private int state;
+    }
+
+    /** Magic bytes beginning an index file. */
+    private static final byte[] MAGIC = { 'G', 'D', 'I', 'R' };
+    /** Version of the index format. */
+    private static final int VERSION = 1;
+    /** Mode recorded for plain files. */
+    private static final int REGULAR_FILE = 0100644;
+    /** Mode recorded for executable files. */
+    private static final int EXECUTABLE_FILE = 0100755;
+    /** Bits of a Unix mode giving the type of file. */
+    private static final int FILE_TYPE = 0170000;
+    /** File type of a plain file. */
+    private static final int REGULAR = 0100000;
+    /** Owner-execute permission bit. */
+    private static final int EXECUTABLE = 0100;
+
+    /** The file holding this index. */
+    private final File file;
+    /** The entries, by path. */
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    /** Modification time of the index file when it was read. */
+    private long written = Long.MAX_VALUE;
+    /** True iff the entries differ from those in the file. */
+    private boolean changed;
+}
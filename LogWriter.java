@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/** Prints logs of commits.  Commits are streamed in order from the commit
+ *  graph and the message index, so that no commit object is loaded, into a
+ *  single buffered writer, and reading stops as soon as enough commits have
+ *  been printed.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class LogWriter {
+
+    /** Commits in the order they were made, oldest first. */
+    static final int CREATION_ORDER = 0;
+    /** Commits by date, newest first. */
+    static final int DATE_ORDER = 1;
+    /** Commits with every commit before its parents. */
+    static final int TOPO_ORDER = 2;
+
+    /** A writer of logs of the commits in GRAPH, whose messages are in
+     *  MESSAGES. */
+    LogWriter(CommitGraph graph, MessageIndex messages) {
+        this.graph = graph;
+        this.messages = messages;
+    }
+
+    /** Sets the options given in ARGS: --max-count N (or -n N), --skip N,
+     *  --oneline and, if ORDERS is true, --date-order and --topo-order.
+     *  Returns false if ARGS are not understood. */
+    boolean parse(String[] args, boolean orders) {
+        for (int i = 0; i < args.length; i += 1) {
+            switch (args[i]) {
+            case "--oneline":
+                oneline = true; break;
+            case "--date-order":
+            case "--topo-order":
+                if (!orders) {
+                    return false;
+                }
+                order = args[i].equals("--date-order")
+                    ? DATE_ORDER : TOPO_ORDER;
+                break;
+            case "-n":
+            case "--max-count":
+            case "--skip":
+                if (i + 1 == args.length
+                    || !args[i + 1].matches("\\d{1,9}")) {
+                    return false;
+                }
+                if (args[i].equals("--skip")) {
+                    skip = Integer.parseInt(args[i + 1]);
+                } else {
+                    maxCount = Integer.parseInt(args[i + 1]);
+                }
+                i += 1;
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Prints the commits on the first-parent chain from the commit in
+     *  ROW. */
+    void log(int row) {
+        try (Printer out = new Printer()) {
+            while (row >= 0 && out.print(row)) {
+                row = graph.parent(row);
+            }
+        }
+    }
+
+    /** Prints all commits, in the chosen order. */
+    void globalLog() {
+        int n = graph.size();
+        try (Printer out = new Printer()) {
+            if (order == DATE_ORDER) {
+                int end = maxCount == Integer.MAX_VALUE
+                    ? n : (int) Math.min(n, (long) skip + maxCount);
+                for (int row : messages.newestFirst(0, end)) {
+                    out.print(row);
+                }
+            } else {
+                for (int i = 0; i < n; i += 1) {
+                    int row = order == TOPO_ORDER ? n - 1 - i : i;
+                    if (!out.print(row)) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Prints commits, skipping and limiting them as asked. */
+    private class Printer implements AutoCloseable {
+
+        /** Prints the commit in ROW unless it is to be skipped.  Returns
+         *  false once no more commits are wanted. */
+        boolean print(int row) {
+            if (seen++ < skip) {
+                return true;
+            }
+            if (printed >= maxCount) {
+                return false;
+            }
+            String id = graph.idAt(row);
+            String message = reader.message(row);
+            if (oneline) {
+                out.print(id.substring(0, ONELINE_ID));
+                out.print(' ');
+                out.print(message);
+                out.print('\n');
+            } else {
+                out.print("===\nCommit ");
+                out.print(id);
+                out.print('\n');
+                out.print(format.format(new Date(graph.date(row))));
+                out.print('\n');
+                out.print(message);
+                out.print("\n\n");
+            }
+            printed += 1;
+            return printed < maxCount;
+        }
+
+        @Override
+        public void close() {
+            out.flush();
+            reader.close();
+        }
+
+        /** The number of commits seen so far. */
+        private int seen;
+        /** The number of commits printed so far. */
+        private int printed;
+        /** Destination of the log. */
+        private final PrintWriter out = new PrintWriter(
+            new BufferedWriter(new OutputStreamWriter(
+                System.out, StandardCharsets.UTF_8), 1 << 16));
+        /** Reader of commit messages. */
+        private final MessageIndex.Reader reader = messages.reader();
+        /** Format of commit dates, as Commit writes them. */
+        private final DateFormat format =
+            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    }
+
+    /** Number of hex digits of the ids printed by --oneline. */
+    private static final int ONELINE_ID = 7;
+
+    /** The graph of the commits. */
+    private final CommitGraph graph;
+    /** The messages of the commits. */
+    private final MessageIndex messages;
+    /** The order of commits in a global log. */
+    private int order = CREATION_ORDER;
+    /** The number of commits to pass over before printing. */
+    private int skip;
+    /** The most commits to print. */
+    private int maxCount = Integer.MAX_VALUE;
+    /** True iff each commit is printed on one line. */
+    private boolean oneline;
+}
@@ -1,5 +1,7 @@
 package gitlet;
 
+import java.util.Arrays;
+
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Maaz Uddin, Zubin Koticha
  */
@@ -9,7 +11,34 @@ public class Main {
      *  <COMMAND> <OPERAND> .... */
 
     public static void main(String... args) {
-        FileStructure gitlet = new FileStructure();
+        if (args.length > 0 && args[0].equals("daemon")) {
+            Daemon.serve();
+            return;
+        }
+        args = Trace.withEnvironment(args);
+        if (!Daemon.forward(args)) {
+            execute(new FileStructure(), args);
+        }
+    }
+
+    /** Runs the command in ARGS, which may begin with the option
+     *  Trace.OPTION, on GITLET and commits its changes to the metadata of
+     *  the repository. */
+    static void execute(FileStructure gitlet, String... args) {
+        String[] command = Trace.start(args);
+        try {
+            run(gitlet, command);
+            try (Trace.Phase p = Trace.phase("transaction commit")) {
+                Transaction.instance().commit();
+            }
+        } finally {
+            Trace.finish();
+        }
+    }
+
+    /** Runs the command in ARGS on GITLET.  The caller commits its changes
+     *  to the metadata of the repository together once it returns. */
+    static void run(FileStructure gitlet, String... args) {
         if (args.length == 0) {
             System.err.println("Please enter a command."); return;
         }
@@ -17,7 +46,10 @@ public class Main {
         case "init":
             gitlet.init(); return;
         case "add":
-            gitlet.add(args[1]); return;
+            if (args.length < 2) {
+                System.out.println("Incorrect operands."); return;
+            }
+            gitlet.add(Arrays.copyOfRange(args, 1, args.length)); return;
         case "commit":
             try {
                 gitlet.commit(args[1]);
@@ -28,18 +60,15 @@ public class Main {
         case "rm":
             gitlet.remove(args[1]); return;
         case "global-log":
-            gitlet.gLog(); return;
+            gitlet.gLog(Arrays.copyOfRange(args, 1, args.length)); return;
         case "log":
-            gitlet.log(); return;
+            gitlet.log(Arrays.copyOfRange(args, 1, args.length)); return;
         case "find":
-            try {
-                gitlet.find(args[1]);
-            } catch (ArrayIndexOutOfBoundsException e) {
-                System.err.println("Please enter a message to find.");
-            }
-            return;
+            gitlet.find(Arrays.copyOfRange(args, 1, args.length)); return;
         case "status":
             gitlet.status(); return;
+        case "diff":
+            gitlet.diff(Arrays.copyOfRange(args, 1, args.length)); return;
         case "checkout":
             if (args.length == 3) {
                 gitlet.fileCheckout(args[2]);
@@ -61,6 +90,13 @@ public class Main {
             gitlet.reset(args[1]); return;
         case "merge":
             gitlet.merge(args[1]); return;
+        case "gc":
+        case "repack":
+        case "prune":
+            gitlet.gc(Arrays.copyOfRange(args, 1, args.length)); return;
+        case "count-objects":
+            gitlet.countObjects(Arrays.copyOfRange(args, 1, args.length));
+            return;
         default:
             System.err.println("No command with that name exists."); return;
         }
@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/** Three-way merges of files, line by line.  The current and given
+ *  versions are each diffed against the version at the split point, and
+ *  the two lists of edits are walked together.  A run of lines that only
+ *  one side changed takes that side's lines; a run that both changed, in
+ *  overlapping or adjacent places, takes them if both sides made the same
+ *  change, and is otherwise a conflict, written between markers.  Lines
+ *  neither side changed are copied from the split point, so only the
+ *  conflicting regions are marked.  The result is written to a stream as it
+ *  is found.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Merger {
+
+    /** Merges the changes made to BASE by OURS and by THEIRS, writing the
+     *  result to OUT.  Any of them may be null for a missing file.  Returns
+     *  true iff there was a conflict.  Binary files are not merged by line:
+     *  unless one side is unchanged, the whole of each side is marked as a
+     *  conflict. */
+    static boolean merge(byte[] base, byte[] ours, byte[] theirs,
+                         OutputStream out) throws IOException {
+        Diff.Text o = text(base), a = text(ours), b = text(theirs);
+        if (o.isBinary() || a.isBinary() || b.isBinary()) {
+            if (Arrays.equals(base, ours)) {
+                b.write(out, 0, b.size(), false);
+                return false;
+            } else if (Arrays.equals(base, theirs)
+                       || Arrays.equals(ours, theirs)) {
+                a.write(out, 0, a.size(), false);
+                return false;
+            }
+            conflict(out, a, 0, a.size(), b, 0, b.size());
+            return true;
+        }
+        int[][] lines = Diff.lines(o, a, b);
+        List<Diff.Edit> ourEdits = Diff.diff(lines[0], lines[1]);
+        List<Diff.Edit> theirEdits = Diff.diff(lines[0], lines[2]);
+        boolean conflicted = false;
+        int i = 0, j = 0, done = 0;
+        int ourShift = 0, theirShift = 0;
+        while (i < ourEdits.size() || j < theirEdits.size()) {
+            boolean oursFirst = j == theirEdits.size()
+                || i < ourEdits.size()
+                   && ourEdits.get(i).aStart <= theirEdits.get(j).aStart;
+            int lo = (oursFirst ? ourEdits.get(i) : theirEdits.get(j)).aStart;
+            int hi = lo;
+            int i0 = i, j0 = j;
+            while (true) {
+                if (i < ourEdits.size() && ourEdits.get(i).aStart <= hi) {
+                    hi = Math.max(hi, ourEdits.get(i).aEnd);
+                    i += 1;
+                } else if (j < theirEdits.size()
+                           && theirEdits.get(j).aStart <= hi) {
+                    hi = Math.max(hi, theirEdits.get(j).aEnd);
+                    j += 1;
+                } else {
+                    break;
+                }
+            }
+            o.write(out, done, lo, false);
+            int aLo = range(ourEdits, i0, i, lo, ourShift, true);
+            int aHi = range(ourEdits, i0, i, hi, ourShift, false);
+            int bLo = range(theirEdits, j0, j, lo, theirShift, true);
+            int bHi = range(theirEdits, j0, j, hi, theirShift, false);
+            if (i == i0) {
+                b.write(out, bLo, bHi, false);
+            } else if (j == j0
+                       || Arrays.equals(lines[1], aLo, aHi,
+                                        lines[2], bLo, bHi)) {
+                a.write(out, aLo, aHi, false);
+            } else {
+                conflict(out, a, aLo, aHi, b, bLo, bHi);
+                conflicted = true;
+            }
+            ourShift = aHi - hi;
+            theirShift = bHi - hi;
+            done = hi;
+        }
+        o.write(out, done, o.size(), false);
+        return conflicted;
+    }
+
+    /** Returns the line of one side corresponding to line AT of the base,
+     *  which is the start (if START) or end of a region of the base changed
+     *  by edits FROM to TO of EDITS.  SHIFT is how far lines of that side
+     *  are displaced from the base by its earlier edits. */
+    private static int range(List<Diff.Edit> edits, int from, int to, int at,
+                             int shift, boolean start) {
+        if (from == to) {
+            return at + shift;
+        } else if (start) {
+            Diff.Edit first = edits.get(from);
+            return first.bStart - (first.aStart - at);
+        }
+        Diff.Edit last = edits.get(to - 1);
+        return last.bEnd + (at - last.aEnd);
+    }
+
+    /** Writes to OUT a conflict between lines ALO to AHI of A and lines BLO
+     *  to BHI of B. */
+    private static void conflict(OutputStream out, Diff.Text a, int aLo,
+                                 int aHi, Diff.Text b, int bLo, int bHi)
+        throws IOException {
+        out.write(OURS);
+        a.write(out, aLo, aHi, true);
+        out.write(SEPARATOR);
+        b.write(out, bLo, bHi, true);
+        out.write(THEIRS);
+    }
+
+    /** Returns CONTENTS as a text, or an empty text if it is null. */
+    private static Diff.Text text(byte[] contents) {
+        return new Diff.Text(contents == null ? new byte[0] : contents);
+    }
+
+    /** Marker beginning a conflict. */
+    private static final byte[] OURS =
+        "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8);
+    /** Marker between the two sides of a conflict. */
+    private static final byte[] SEPARATOR =
+        "=======\n".getBytes(StandardCharsets.UTF_8);
+    /** Marker ending a conflict. */
+    private static final byte[] THEIRS =
+        ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+}
@@ -0,0 +1,387 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/** Indices of the messages and dates of commits, kept up to date as
+ *  commits are made, so that find never needs to load a commit that does
+ *  not match.  Commits are identified by their rows in the commit graph.
+ *
+ *  The index lives in a directory holding
+ *  <ul>
+ *  <li> messages: each commit's message, as its length and UTF-8 bytes,
+ *       in order of row;
+ *  <li> offsets: the 8-byte offset in messages of each row's message;
+ *  <li> dates: 12-byte records of a date in milliseconds and a row, sorted
+ *       by date;
+ *  <li> tokens/XX: an inverted index from each lowercase word of a
+ *       message to the rows containing it, as records of the word and a
+ *       row, spread over 256 files by the hash XX of the word so that
+ *       looking a word up reads only one small file.
+ *  </ul>
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class MessageIndex {
+
+    /** Search for messages equal to the query. */
+    static final int EXACT = 0;
+    /** Search for messages containing every word of the query. */
+    static final int WORDS = 1;
+    /** Search for messages containing the query. */
+    static final int SUBSTRING = 2;
+    /** Search for messages containing a match of the query as a regular
+     *  expression. */
+    static final int REGEX = 3;
+
+    /** The index stored in DIR. */
+    MessageIndex(File dir) {
+        this.dir = dir;
+    }
+
+    /** Returns the number of commits indexed. */
+    int size() {
+        return (int) (new File(dir, "offsets").length() / 8);
+    }
+
+    /** Deletes the index, leaving it empty. */
+    void delete() {
+        Utils.deleteTree(dir);
+    }
+
+    /** Adds the commit in ROW, which must be the next row, made on DATE
+     *  with the given MESSAGE. */
+    void add(int row, long date, String message) {
+        if (row != size()) {
+            throw new IllegalArgumentException("message index out of step");
+        }
+        dir.mkdirs();
+        new File(dir, "tokens").mkdir();
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        try (RandomAccessFile messages =
+                 new RandomAccessFile(new File(dir, "messages"), "rw");
+             RandomAccessFile offsets =
+                 new RandomAccessFile(new File(dir, "offsets"), "rw")) {
+            long offset = messages.length();
+            messages.seek(offset);
+            messages.writeInt(text.length);
+            messages.write(text);
+            offsets.seek(offsets.length());
+            offsets.writeLong(offset);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (String token : new LinkedHashSet<>(tokens(message))) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(record)) {
+                out.writeUTF(token);
+                out.writeInt(row);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            append(bucket(token), record.toByteArray());
+        }
+        addDate(date, row);
+    }
+
+    /** Returns the message of the commit in ROW. */
+    String message(int row) {
+        try (Reader reader = reader()) {
+            return reader.message(row);
+        }
+    }
+
+    /** Returns a reader of the messages of many commits, which the caller
+     *  must close. */
+    Reader reader() {
+        return new Reader();
+    }
+
+    /** Reads the messages of commits, keeping the index files open between
+     *  reads. */
+    class Reader implements Closeable {
+
+        /** Returns the message of the commit in ROW. */
+        String message(int row) {
+            try {
+                if (messages == null) {
+                    offsets = new RandomAccessFile(new File(dir, "offsets"),
+                                                   "r");
+                    messages = new RandomAccessFile(new File(dir,
+                                                             "messages"),
+                                                    "r");
+                }
+                offsets.seek(8L * row);
+                messages.seek(offsets.readLong());
+                byte[] text = new byte[messages.readInt()];
+                messages.readFully(text);
+                return new String(text, StandardCharsets.UTF_8);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (messages != null) {
+                    messages.close();
+                    offsets.close();
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** The offsets file, once opened. */
+        private RandomAccessFile offsets;
+        /** The messages file, once opened. */
+        private RandomAccessFile messages;
+    }
+
+    /** Returns the rows of up to COUNT commits, newest first, starting
+     *  with the FROMth newest, read from the end of the date index. */
+    int[] newestFirst(int from, int count) {
+        File file = new File(dir, "dates");
+        try (RandomAccessFile dates = new RandomAccessFile(file, "r")) {
+            int total = (int) (dates.length() / DATE_RECORD);
+            int n = Math.max(0, Math.min(count, total - from));
+            int[] result = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                dates.seek((long) (total - 1 - from - i) * DATE_RECORD + 8);
+                result[i] = dates.readInt();
+            }
+            return result;
+        } catch (IOException excp) {
+            return new int[0];
+        }
+    }
+
+    /** Returns the rows, in increasing order, of the commits made between
+     *  SINCE and UNTIL inclusive (in milliseconds) whose messages match
+     *  QUERY in the given MODE.  A null QUERY matches every message.  Only
+     *  the postings of the query's words, the dates in the range and the
+     *  messages of candidate commits are read. */
+    int[] search(String query, int mode, long since, long until) {
+        int[] rows = null;
+        if (since != Long.MIN_VALUE || until != Long.MAX_VALUE) {
+            rows = between(since, until);
+        }
+        if (query == null) {
+            return rows == null ? range(size()) : rows;
+        }
+        List<String> words = tokens(query);
+        if ((mode == EXACT || mode == WORDS) && !words.isEmpty()) {
+            rows = intersect(rows, withTokens(words));
+        }
+        if (mode == WORDS && !words.isEmpty()) {
+            return rows;
+        }
+        if (rows == null) {
+            rows = range(size());
+        }
+        Pattern pattern = mode == REGEX ? Pattern.compile(query) : null;
+        int n = 0;
+        int[] result = new int[rows.length];
+        try (Reader reader = reader()) {
+            for (int row : rows) {
+                String message = reader.message(row);
+                boolean matches;
+                if (mode == REGEX) {
+                    matches = pattern.matcher(message).find();
+                } else if (mode == SUBSTRING || mode == WORDS) {
+                    matches = message.contains(query);
+                } else {
+                    matches = message.equals(query);
+                }
+                if (matches) {
+                    result[n++] = row;
+                }
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Returns the lowercase words of TEXT, in order. */
+    static List<String> tokens(String text) {
+        ArrayList<String> result = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (String word : lower.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the rows, in increasing order, of commits whose messages
+     *  contain all of WORDS. */
+    private int[] withTokens(List<String> words) {
+        int[] result = null;
+        for (String word : new LinkedHashSet<>(words)) {
+            result = intersect(result, postings(word));
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the rows, in increasing order, of commits whose messages
+     *  contain WORD. */
+    private int[] postings(String word) {
+        File bucket = bucket(word);
+        int[] result = new int[16];
+        int n = 0;
+        if (!bucket.isFile()) {
+            return new int[0];
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(bucket)))) {
+            while (true) {
+                String token = in.readUTF();
+                int row = in.readInt();
+                if (token.equals(word)) {
+                    if (n == result.length) {
+                        result = Arrays.copyOf(result, 2 * n);
+                    }
+                    result[n++] = row;
+                }
+            }
+        } catch (EOFException excp) {
+            result = Arrays.copyOf(result, n);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /** Returns the rows, in increasing order, of commits made between SINCE
+     *  and UNTIL inclusive, found by binary search of the date index. */
+    private int[] between(long since, long until) {
+        File file = new File(dir, "dates");
+        try (RandomAccessFile dates = new RandomAccessFile(file, "r")) {
+            int count = (int) (dates.length() / DATE_RECORD);
+            int from = lowerBound(dates, count, since);
+            int to = until == Long.MAX_VALUE
+                ? count : lowerBound(dates, count, until + 1);
+            int[] result = new int[Math.max(0, to - from)];
+            dates.seek((long) from * DATE_RECORD);
+            for (int i = 0; i < result.length; i += 1) {
+                dates.readLong();
+                result[i] = dates.readInt();
+            }
+            Arrays.sort(result);
+            return result;
+        } catch (IOException excp) {
+            return new int[0];
+        }
+    }
+
+    /** Records in the date index that ROW was made on DATE, keeping the
+     *  index sorted.  Commits nearly always arrive in order of date, so the
+     *  record is nearly always simply appended. */
+    private void addDate(long date, int row) {
+        File file = new File(dir, "dates");
+        try (RandomAccessFile dates = new RandomAccessFile(file, "rw")) {
+            int count = (int) (dates.length() / DATE_RECORD);
+            int at = lowerBound(dates, count, date + 1);
+            byte[] rest = new byte[(count - at) * DATE_RECORD];
+            dates.seek((long) at * DATE_RECORD);
+            dates.readFully(rest);
+            dates.seek((long) at * DATE_RECORD);
+            dates.writeLong(date);
+            dates.writeInt(row);
+            dates.write(rest);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the position of the first of the COUNT records of DATES
+     *  whose date is at least DATE. */
+    private static int lowerBound(RandomAccessFile dates, int count,
+                                  long date) throws IOException {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            dates.seek((long) mid * DATE_RECORD);
+            if (dates.readLong() < date) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Returns the file of the inverted index holding WORD. */
+    private File bucket(String word) {
+        return new File(new File(dir, "tokens"),
+                        String.format("%02x", word.hashCode() & 0xff));
+    }
+
+    /** Appends BYTES to FILE. */
+    private static void append(File file, byte[] bytes) {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(out.length());
+            out.write(bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the increasing rows in both A and B, where a null array
+     *  stands for every row. */
+    private static int[] intersect(int[] a, int[] b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        }
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i += 1;
+            } else if (a[i] > b[j]) {
+                j += 1;
+            } else {
+                result[n++] = a[i];
+                i += 1;
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Returns the rows 0 to N - 1. */
+    private static int[] range(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = i;
+        }
+        return result;
+    }
+
+    /** Length of a record of the date index. */
+    private static final int DATE_RECORD = 12;
+
+    /** The directory holding the index. */
+    private final File dir;
+}
@@ -0,0 +1,196 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** The 20-byte SHA-1 id of an object, held in five ints rather than as a
+ *  40-character hex String, so that it takes about a quarter of the memory,
+ *  is compared with five int comparisons, and is hashed for free: its first
+ *  int is already uniformly distributed.  Ids are converted to and from hex
+ *  through lookup tables, and only where a String is needed.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** Number of bytes in an id. */
+    static final int LENGTH = 20;
+
+    /** The id whose bytes, in order, are the big-endian ints W0 through
+     *  W4. */
+    private ObjectId(int w0, int w1, int w2, int w3, int w4) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+        this.w4 = w4;
+    }
+
+    /** Returns the id held in the LENGTH bytes of BYTES starting at
+     *  OFFSET. */
+    static ObjectId fromBytes(byte[] bytes, int offset) {
+        return new ObjectId(intAt(bytes, offset), intAt(bytes, offset + 4),
+                            intAt(bytes, offset + 8),
+                            intAt(bytes, offset + 12),
+                            intAt(bytes, offset + 16));
+    }
+
+    /** Returns the id written in hex as HEX, which must have exactly
+     *  2 * LENGTH hex digits.  Throws IllegalArgumentException if it does
+     *  not. */
+    static ObjectId fromHex(String hex) {
+        ObjectId result = parse(hex);
+        if (result == null) {
+            throw new IllegalArgumentException("bad object id: " + hex);
+        }
+        return result;
+    }
+
+    /** Returns the id written in hex as HEX, or null if HEX is not exactly
+     *  2 * LENGTH hex digits. */
+    static ObjectId parse(String hex) {
+        if (hex.length() != 2 * LENGTH) {
+            return null;
+        }
+        long w0 = hexAt(hex, 0), w1 = hexAt(hex, 8), w2 = hexAt(hex, 16),
+            w3 = hexAt(hex, 24), w4 = hexAt(hex, 32);
+        if ((w0 | w1 | w2 | w3 | w4) < 0) {
+            return null;
+        }
+        return new ObjectId((int) w0, (int) w1, (int) w2, (int) w3,
+                            (int) w4);
+    }
+
+    /** Returns the LENGTH bytes of this id. */
+    byte[] toBytes() {
+        byte[] result = new byte[LENGTH];
+        copyTo(result, 0);
+        return result;
+    }
+
+    /** Writes the LENGTH bytes of this id to BYTES, starting at OFFSET. */
+    void copyTo(byte[] bytes, int offset) {
+        putInt(bytes, offset, w0);
+        putInt(bytes, offset + 4, w1);
+        putInt(bytes, offset + 8, w2);
+        putInt(bytes, offset + 12, w3);
+        putInt(bytes, offset + 16, w4);
+    }
+
+    /** Returns this id in hex. */
+    String name() {
+        char[] result = new char[2 * LENGTH];
+        putHex(result, 0, w0);
+        putHex(result, 8, w1);
+        putHex(result, 16, w2);
+        putHex(result, 24, w3);
+        putHex(result, 32, w4);
+        return new String(result);
+    }
+
+    /** Returns the LENGTH bytes of BYTES starting at OFFSET in hex. */
+    static String toHex(byte[] bytes, int offset) {
+        char[] result = new char[2 * LENGTH];
+        for (int i = 0; i < LENGTH; i += 1) {
+            int b = bytes[offset + i] & 0xff;
+            result[2 * i] = DIGITS[b >>> 4];
+            result[2 * i + 1] = DIGITS[b & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** Returns the ith int of this id, for I from 0 to 4. */
+    int word(int i) {
+        switch (i) {
+        case 0: return w0;
+        case 1: return w1;
+        case 2: return w2;
+        case 3: return w3;
+        default: return w4;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return w0 == other.w0 && w1 == other.w1 && w2 == other.w2
+            && w3 == other.w3 && w4 == other.w4;
+    }
+
+    @Override
+    public int hashCode() {
+        return w0;
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        for (int i = 0; i < LENGTH / 4; i += 1) {
+            int c = Integer.compareUnsigned(word(i), other.word(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the big-endian int in the four bytes of BYTES at OFFSET. */
+    private static int intAt(byte[] bytes, int offset) {
+        return (bytes[offset] << 24) | (bytes[offset + 1] & 0xff) << 16
+            | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+
+    /** Writes V as four big-endian bytes to BYTES at OFFSET. */
+    private static void putInt(byte[] bytes, int offset, int v) {
+        bytes[offset] = (byte) (v >>> 24);
+        bytes[offset + 1] = (byte) (v >>> 16);
+        bytes[offset + 2] = (byte) (v >>> 8);
+        bytes[offset + 3] = (byte) v;
+    }
+
+    /** Returns the unsigned int written as the eight hex digits of HEX at
+     *  OFFSET, or -1 if they are not all hex digits. */
+    private static long hexAt(String hex, int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 8; i += 1) {
+            char c = hex.charAt(i);
+            int v = c < VALUES.length ? VALUES[c] : -1;
+            if (v < 0) {
+                return -1;
+            }
+            result = (result << 4) | v;
+        }
+        return result;
+    }
+
+    /** Writes V as eight hex digits to CHARS at OFFSET. */
+    private static void putHex(char[] chars, int offset, int v) {
+        for (int i = 7; i >= 0; i -= 1) {
+            chars[offset + i] = DIGITS[v & 0xf];
+            v >>>= 4;
+        }
+    }
+
+    /** The hex digits, by value. */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The values of hex digits, by character, or -1 for characters that
+     *  are not hex digits. */
+    private static final byte[] VALUES = new byte['g'];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i += 1) {
+            VALUES[DIGITS[i]] = (byte) i;
+            VALUES[Character.toUpperCase(DIGITS[i])] = (byte) i;
+        }
+    }
+
+    /** The bytes of this id, as five big-endian ints. */
+    private final int w0, w1, w2, w3, w4;
+}
@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A map from object ids to non-null values, for the large maps of ids
+ *  built while walking a repository.  Keys are not kept as objects: their
+ *  five ints are stored inline in one int array, and collisions are
+ *  resolved by linear probing in a table kept at most half full, so an
+ *  entry costs about 28 bytes of key and reference, rather than the 150 or
+ *  so of a String key in a HashMap.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class ObjectIdMap<V> {
+
+    /** An empty map. */
+    ObjectIdMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /** An empty map with room for about CAPACITY / 2 entries before it
+     *  grows.  CAPACITY must be a power of two. */
+    private ObjectIdMap(int capacity) {
+        keys = new int[capacity * WORDS];
+        values = new Object[capacity];
+    }
+
+    /** Returns the number of entries. */
+    int size() {
+        return size;
+    }
+
+    /** Returns the value of ID, or null if it has none. */
+    @SuppressWarnings("unchecked")
+    V get(ObjectId id) {
+        int slot = find(id);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /** Returns true iff ID has a value. */
+    boolean containsKey(ObjectId id) {
+        return find(id) >= 0;
+    }
+
+    /** Maps ID to VALUE, which must not be null, and returns its old value,
+     *  or null if it had none. */
+    @SuppressWarnings("unchecked")
+    V put(ObjectId id, V value) {
+        int slot = find(id);
+        if (slot >= 0) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        if (2 * (size + 1) > values.length) {
+            grow();
+        }
+        insert(id, value);
+        size += 1;
+        return null;
+    }
+
+    /** Maps ID to VALUE, which must not be null, unless it already has a
+     *  value.  Returns true iff it did not. */
+    boolean putIfAbsent(ObjectId id, V value) {
+        if (containsKey(id)) {
+            return false;
+        }
+        put(id, value);
+        return true;
+    }
+
+    /** Returns the keys of this map, in no particular order. */
+    List<ObjectId> keys() {
+        ArrayList<ObjectId> result = new ArrayList<>(size);
+        byte[] bytes = new byte[ObjectId.LENGTH];
+        for (int slot = 0; slot < values.length; slot += 1) {
+            if (values[slot] != null) {
+                for (int i = 0; i < WORDS; i += 1) {
+                    int word = keys[slot * WORDS + i];
+                    for (int b = 0; b < 4; b += 1) {
+                        bytes[4 * i + b] = (byte) (word >>> (24 - 8 * b));
+                    }
+                }
+                result.add(ObjectId.fromBytes(bytes, 0));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the slot holding ID, or -1 if there is none. */
+    private int find(ObjectId id) {
+        int mask = values.length - 1;
+        for (int slot = id.hashCode() & mask; values[slot] != null;
+             slot = (slot + 1) & mask) {
+            if (matches(slot, id)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /** Puts ID and VALUE in the first free slot for ID. */
+    private void insert(ObjectId id, Object value) {
+        int mask = values.length - 1;
+        int slot = id.hashCode() & mask;
+        while (values[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        for (int i = 0; i < WORDS; i += 1) {
+            keys[slot * WORDS + i] = id.word(i);
+        }
+        values[slot] = value;
+    }
+
+    /** Returns true iff the key in SLOT is ID. */
+    private boolean matches(int slot, ObjectId id) {
+        int base = slot * WORDS;
+        for (int i = 0; i < WORDS; i += 1) {
+            if (keys[base + i] != id.word(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Doubles the size of the table. */
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[2 * oldKeys.length];
+        values = new Object[2 * oldValues.length];
+        int mask = values.length - 1;
+        for (int old = 0; old < oldValues.length; old += 1) {
+            if (oldValues[old] != null) {
+                int slot = oldKeys[old * WORDS] & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                System.arraycopy(oldKeys, old * WORDS, keys, slot * WORDS,
+                                 WORDS);
+                values[slot] = oldValues[old];
+            }
+        }
+    }
+
+    /** Ints in an id. */
+    private static final int WORDS = ObjectId.LENGTH / 4;
+    /** Number of slots of a new map. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The keys of the slots, WORDS ints each. */
+    private int[] keys;
+    /** The values of the slots, or null for empty slots. */
+    private Object[] values;
+    /** Number of entries. */
+    private int size;
+}
@@ -0,0 +1,559 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** The content-addressed object store of a gitlet repository.  A loose
+ *  object with id XXYYYY... lives in the file objects/XX/YYYY..., so no
+ *  single directory grows with the history.  Each such file is
+ *  Deflater-compressed and begins with a header of the form "TYPE SIZE\0"
+ *  followed by the SIZE bytes of content.  Objects may also be gathered
+ *  into the packfiles in objects/pack (see PackFile), which are consulted
+ *  when there is no loose copy of an object.
+ *
+ *  A blob of at least CHUNK_THRESHOLD bytes is split into content-defined
+ *  chunks (see Chunker), each stored once as a blob of its own, and is
+ *  itself stored, under the id of its whole contents, as an object of type
+ *  CHUNKS listing the ids and lengths of its chunks.  A new version of a
+ *  large file that differs from an old one in a small region thus only
+ *  adds the few chunks around that region and a new list.  The blob
+ *  methods (openBlob, readBlob and blobSize) reassemble such blobs; the
+ *  others see the list.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class ObjectStore {
+
+    /** Type of an object holding the contents of a file. */
+    static final String BLOB = "blob";
+
+    /** Type of an object listing the chunks of a large blob. */
+    static final String CHUNKS = "chunks";
+
+    /** Size in bytes from which the contents of files are stored in
+     *  chunks. */
+    static final long CHUNK_THRESHOLD = 1 << 20;
+
+    /** A store whose objects live under DIR. */
+    ObjectStore(File dir) {
+        this.dir = dir;
+    }
+
+    /** Returns the store of the repository in the current directory. */
+    static ObjectStore instance() {
+        if (instance == null) {
+            instance = new ObjectStore(new File(".gitlet/objects"));
+        }
+        return instance;
+    }
+
+    /** Forgets the store of the repository in the current directory, so that
+     *  the next call of instance() reads it afresh from disk. */
+    static void invalidate() {
+        instance = null;
+    }
+
+    /** Returns the directory holding this store's objects. */
+    File getDir() {
+        return dir;
+    }
+
+    /** Returns true iff an object with the given ID is stored. */
+    boolean contains(String id) {
+        return fileFor(id).isFile() || packFor(id) != null;
+    }
+
+    /** Stores CONTENTS as an object of the given TYPE, named by the SHA-1
+     *  of CONTENTS, and returns its id. */
+    String put(String type, byte[] contents) {
+        String id = Utils.sha1(contents);
+        if (!contains(id)) {
+            put(id, type, contents);
+        }
+        return id;
+    }
+
+    /** Stores CONTENTS as an object of the given TYPE under ID, replacing
+     *  any object already stored there. */
+    void put(String id, String type, byte[] contents) {
+        File target = fileFor(id);
+        File parent = target.getParentFile();
+        parent.mkdirs();
+        try {
+            File temp = File.createTempFile("tmp_obj_", null, parent);
+            try (OutputStream out = openWriter(temp, type,
+                                                contents.length)) {
+                out.write(contents);
+            }
+            Trace.count(Trace.OBJECT_BYTES_WRITTEN, contents.length);
+            Files.move(temp.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Stores the contents of FILE as an object of the given TYPE and
+     *  returns its id.  The file is read once, through a fixed-size buffer
+     *  that feeds both the SHA-1 digest and the compressor, into a temporary
+     *  file that is then renamed into place; so files of any size are stored
+     *  in constant memory and a partially written object is never
+     *  visible.  Blobs of at least CHUNK_THRESHOLD bytes are stored in
+     *  chunks. */
+    String insert(String type, File file) {
+        if (type.equals(BLOB) && file.length() >= CHUNK_THRESHOLD) {
+            return insertChunks(file);
+        }
+        dir.mkdirs();
+        File temp = null;
+        try {
+            temp = File.createTempFile("tmp_obj_", null, dir);
+            long size = file.length();
+            long total = 0;
+            MessageDigest md = Utils.sha1Digest();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = new FileInputStream(file);
+                 OutputStream out = openWriter(temp, type, size)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    md.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    total += n;
+                }
+            }
+            if (total != size) {
+                throw new IllegalArgumentException(
+                    file + " changed while being read");
+            }
+            Trace.count(Trace.BYTES_HASHED, total);
+            Trace.count(Trace.OBJECT_BYTES_WRITTEN, total);
+            String id = toHex(md.digest());
+            File target = fileFor(id);
+            if (!contains(id)) {
+                target.getParentFile().mkdirs();
+                Files.move(temp.toPath(), target.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+            return id;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /** Stores the contents of FILE as a blob split into chunks, writing
+     *  only the chunks not already stored, and returns its id. */
+    private String insertChunks(File file) {
+        long size = file.length();
+        long total = 0;
+        MessageDigest md = Utils.sha1Digest();
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        byte[] entry = new byte[CHUNK_ENTRY];
+        try (InputStream in = new FileInputStream(file)) {
+            Chunker chunker = new Chunker(in);
+            byte[] chunk;
+            while ((chunk = chunker.next()) != null) {
+                md.update(chunk);
+                total += chunk.length;
+                ObjectId chunkId = Utils.sha1Id(chunk);
+                String name = chunkId.name();
+                if (!contains(name)) {
+                    put(name, BLOB, chunk);
+                }
+                chunkId.copyTo(entry, 0);
+                ByteBuffer.wrap(entry).putInt(ID_LENGTH, chunk.length);
+                list.write(entry);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (total != size) {
+            throw new IllegalArgumentException(
+                file + " changed while being read");
+        }
+        Trace.count(Trace.BYTES_HASHED, total);
+        String id = toHex(md.digest());
+        if (!contains(id)) {
+            put(id, CHUNKS, list.toByteArray());
+        }
+        return id;
+    }
+
+    /** Returns a stream of the contents of blob ID.  A blob stored in
+     *  chunks is reassembled as it is read, each chunk being opened only
+     *  once the one before it is exhausted.  The caller must close it. */
+    InputStream openBlob(String id) {
+        PackFile pack = packedOnly(id);
+        if (pack != null) {
+            return pack.type(id).equals(CHUNKS)
+                ? chunks(pack.read(id)) : pack.open(id);
+        }
+        InputStream in = openRaw(id);
+        if (!readHeader(in, id).type.equals(CHUNKS)) {
+            return in;
+        }
+        try (InputStream list = in) {
+            return chunks(list.readAllBytes());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the full contents of blob ID, reassembled if it is stored in
+     *  chunks. */
+    byte[] readBlob(String id) {
+        try (InputStream in = openBlob(id)) {
+            byte[] result = in.readAllBytes();
+            Trace.count(Trace.OBJECT_BYTES_READ, result.length);
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the size in bytes of the contents of blob ID. */
+    long blobSize(String id) {
+        if (!type(id).equals(CHUNKS)) {
+            return size(id);
+        }
+        ByteBuffer list = ByteBuffer.wrap(read(id));
+        long result = 0;
+        for (int i = ID_LENGTH; i < list.limit(); i += CHUNK_ENTRY) {
+            result += list.getInt(i);
+        }
+        return result;
+    }
+
+    /** Returns the ids of the chunks in LIST, the contents of an object of
+     *  type CHUNKS, in order. */
+    static List<String> chunkIds(byte[] list) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < list.length; i += CHUNK_ENTRY) {
+            result.add(ObjectId.toHex(list, i));
+        }
+        return result;
+    }
+
+    /** Returns a stream of the concatenated chunks listed in LIST. */
+    private InputStream chunks(byte[] list) {
+        Iterator<String> ids = chunkIds(list).iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return open(ids.next());
+            }
+        });
+    }
+
+    /** Returns a stream of the contents of object ID, positioned just past
+     *  its header.  The caller must close it. */
+    InputStream open(String id) {
+        PackFile pack = packedOnly(id);
+        if (pack != null) {
+            return pack.open(id);
+        }
+        InputStream in = openRaw(id);
+        readHeader(in, id);
+        return in;
+    }
+
+    /** Returns the full contents of object ID. */
+    byte[] read(String id) {
+        PackFile pack = packedOnly(id);
+        if (pack != null) {
+            byte[] result = pack.read(id);
+            Trace.count(Trace.OBJECT_BYTES_READ, result.length);
+            return result;
+        }
+        try (InputStream in = openRaw(id)) {
+            long size = readHeader(in, id).size;
+            Trace.count(Trace.OBJECT_BYTES_READ, size);
+            ByteArrayOutputStream result =
+                new ByteArrayOutputStream((int) Math.min(size, BUFFER_SIZE));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                result.write(buffer, 0, n);
+            }
+            return result.toByteArray();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the type of object ID. */
+    String type(String id) {
+        PackFile pack = packedOnly(id);
+        if (pack != null) {
+            return pack.type(id);
+        }
+        try (InputStream in = openRaw(id)) {
+            return readHeader(in, id).type;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the size in bytes of the contents of object ID. */
+    long size(String id) {
+        PackFile pack = packedOnly(id);
+        if (pack != null) {
+            return pack.size(id);
+        }
+        try (InputStream in = openRaw(id)) {
+            return readHeader(in, id).size;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the ids of all loose objects. */
+    List<String> looseIds() {
+        ArrayList<String> result = new ArrayList<>();
+        String[] fanout = dir.list();
+        if (fanout == null) {
+            return result;
+        }
+        for (String prefix : fanout) {
+            if (prefix.length() != 2) {
+                continue;
+            }
+            List<String> names = Utils.plainFilenamesIn(new File(dir, prefix));
+            for (String rest : names) {
+                if (rest.length() == ID_LENGTH * 2 - 2) {
+                    result.add(prefix + rest);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the packs of this store.  Trees are read from several
+     *  threads at once, so the list is only published once complete. */
+    synchronized List<PackFile> packs() {
+        if (packs == null) {
+            ArrayList<PackFile> found = new ArrayList<>();
+            List<String> names = Utils.plainFilenamesIn(packDir());
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(PackFile.PACK)) {
+                        found.add(new PackFile(new File(packDir(), name)));
+                    }
+                }
+            }
+            packs = found;
+        }
+        return packs;
+    }
+
+    /** Gathers the objects IDS of this store, loose or packed, into a
+     *  single new pack, which is returned, and removes the loose copies and
+     *  old packs it replaces, together with anything kept beside those
+     *  packs.  Objects in the old packs but not in IDS are dropped, so they
+     *  must first be unpacked if they are to be kept.  NAMES maps blob ids
+     *  to the names of files they were versions of, so that versions of one
+     *  file are stored as deltas against each other. */
+    PackFile repack(Collection<String> ids, Map<String, String> names) {
+        List<PackFile> old = packs();
+        PackFile result = PackFile.write(packDir(), this,
+                                         new ArrayList<>(new TreeSet<>(ids)),
+                                         names);
+        for (PackFile pack : old) {
+            pack.close();
+            if (!pack.getFile().equals(result.getFile())) {
+                String name = pack.getFile().getName();
+                name = name.substring(0, name.length()
+                                      - PackFile.PACK.length());
+                for (String other : Utils.plainFilenamesIn(packDir())) {
+                    if (other.startsWith(name + ".")) {
+                        new File(packDir(), other).delete();
+                    }
+                }
+            }
+        }
+        for (String id : looseIds()) {
+            if (result.contains(id)) {
+                delete(id);
+            }
+        }
+        packs = new ArrayList<>();
+        packs.add(result);
+        return result;
+    }
+
+    /** Makes a loose copy of object ID, which is packed, and sets its
+     *  modification time to TIME, in milliseconds since the epoch. */
+    void unpack(String id, long time) {
+        put(id, type(id), read(id));
+        fileFor(id).setLastModified(time);
+    }
+
+    /** Deletes the loose copy of object ID, and its directory if that is
+     *  left empty. */
+    void delete(String id) {
+        File file = fileFor(id);
+        file.delete();
+        file.getParentFile().delete();
+    }
+
+    /** Returns the file that does or would hold object ID. */
+    File fileFor(String id) {
+        return new File(new File(dir, id.substring(0, 2)), id.substring(2));
+    }
+
+    /** Returns the pack holding object ID, or null if there is none. */
+    private PackFile packFor(String id) {
+        for (PackFile pack : packs()) {
+            if (pack.contains(id)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the pack holding object ID if it has no loose copy, and
+     *  otherwise null. */
+    private PackFile packedOnly(String id) {
+        if (fileFor(id).isFile()) {
+            return null;
+        }
+        return packFor(id);
+    }
+
+    /** Returns the directory holding this store's packs. */
+    private File packDir() {
+        return new File(dir, "pack");
+    }
+
+    /** Returns the 20-byte SHA-1 value written in hex as ID. */
+    static byte[] toBytes(String id) {
+        return ObjectId.fromHex(id).toBytes();
+    }
+
+    /** Returns the 20-byte SHA-1 value ID written in hex. */
+    static String toHex(byte[] id) {
+        return ObjectId.toHex(id, 0);
+    }
+
+    /** Returns a compressing stream onto FILE that has already been given
+     *  the header for an object of the given TYPE and SIZE. */
+    static OutputStream openWriter(File file, String type, long size)
+        throws IOException {
+        OutputStream out =
+            new DeflaterOutputStream(new FileOutputStream(file),
+                                     new Deflater(Deflater.BEST_SPEED),
+                                     BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    def.end();
+                }
+            };
+        out.write((type + " " + size + "\0")
+                  .getBytes(StandardCharsets.US_ASCII));
+        return out;
+    }
+
+    /** Returns a decompressing stream over the file of object ID, positioned
+     *  at its header. */
+    private InputStream openRaw(String id) {
+        File file = fileFor(id);
+        try {
+            return new InflaterInputStream(
+                new BufferedInputStream(new FileInputStream(file),
+                                        BUFFER_SIZE),
+                new Inflater(), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inf.end();
+                }
+            };
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("no object " + id);
+        }
+    }
+
+    /** Reads and returns the header of object ID from IN. */
+    private static Header readHeader(InputStream in, String id) {
+        try {
+            StringBuilder text = new StringBuilder();
+            int c;
+            while ((c = in.read()) > 0) {
+                text.append((char) c);
+            }
+            int space = text.indexOf(" ");
+            if (c != 0 || space < 0) {
+                throw new IllegalArgumentException("corrupt object " + id);
+            }
+            return new Header(text.substring(0, space),
+                              Long.parseLong(text.substring(space + 1)));
+        } catch (IOException | NumberFormatException excp) {
+            throw new IllegalArgumentException("corrupt object " + id);
+        }
+    }
+
+    /** The type and size recorded at the start of an object. */
+    private static class Header {
+        /** A header for an object of type TYPE holding SIZE bytes. */
+        Header(String type, long size) {
+            this.type = type;
+            this.size = size;
+        }
+
+        /** The object's type. */
+        private final String type;
+        /** The length of the object's contents. */
+        private final long size;
+    }
+
+    /** Size of the buffers used when compressing and decompressing. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Length of an object id in bytes. */
+    static final int ID_LENGTH = 20;
+
+    /** Length of the entry for one chunk in a list of chunks: its id and
+     *  its length as a big-endian int. */
+    private static final int CHUNK_ENTRY = ID_LENGTH + 4;
+
+    /** The store of the repository in the current directory. */
+    private static ObjectStore instance;
+
+    /** The packs of this store, or null if not yet loaded. */
+    private List<PackFile> packs;
+
+    /** Directory holding the fan-out subdirectories of objects. */
+    private final File dir;
+}
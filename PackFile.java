@@ -0,0 +1,613 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A packfile: many objects stored in one file, some of them as deltas
+ *  against an earlier object of the same pack, together with a sorted
+ *  index.
+ *
+ *  The pack, pack-NAME.pack, starts with the magic bytes "GPAK" and holds a
+ *  sequence of entries.  Each entry is a type byte (the index of the type
+ *  in TYPES, with the high bit set if the entry is a delta), the size of the
+ *  object, the length of the compressed data that follows, for deltas the
+ *  distance back to the entry of the base, and finally the Deflater
+ *  compressed object or delta.  All numbers are base-128 integers.
+ *
+ *  The index, pack-NAME.idx, starts with the magic bytes "GIDX" followed by
+ *  a fanout table of 256 ints whose Kth element is the number of objects
+ *  whose id begins with a byte no greater than K, then the sorted 20-byte
+ *  ids, then the 8-byte offset of each object's entry in the pack.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class PackFile {
+
+    /** The object types that can be stored in a pack. */
+    static final List<String> TYPES =
+        Arrays.asList("", ObjectStore.BLOB, CommitStore.COMMIT,
+                      Tree.TREE, ObjectStore.CHUNKS);
+
+    /** The pack stored in PACK, whose index sits beside it. */
+    PackFile(File pack) {
+        this.pack = pack;
+        String name = pack.getName();
+        File idx = new File(pack.getParentFile(),
+                            name.substring(0, name.length() - PACK.length())
+                            + IDX);
+        try (RandomAccessFile idxFile = new RandomAccessFile(idx, "r")) {
+            index = idxFile.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                             0, idxFile.length());
+            data = new RandomAccessFile(pack, "r").getChannel();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        count = index.getInt(FANOUT + 255 * 4);
+    }
+
+    /** Returns the file holding this pack's entries. */
+    File getFile() {
+        return pack;
+    }
+
+    /** Returns the number of objects in this pack. */
+    int size() {
+        return count;
+    }
+
+    /** Returns the ids of all objects in this pack, in sorted order. */
+    List<String> ids() {
+        ArrayList<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i += 1) {
+            result.add(idAt(i));
+        }
+        return result;
+    }
+
+    /** Returns true iff object ID is in this pack. */
+    boolean contains(String id) {
+        return find(id) >= 0;
+    }
+
+    /** Returns the type of object ID, which must be in this pack. */
+    String type(String id) {
+        return TYPES.get(readHeader(offsetOf(id)).type);
+    }
+
+    /** Returns the size of object ID, which must be in this pack. */
+    long size(String id) {
+        return readHeader(offsetOf(id)).size;
+    }
+
+    /** Returns the contents of object ID, which must be in this pack,
+     *  resolving any chain of deltas it is stored as. */
+    byte[] read(String id) {
+        return resolve(offsetOf(id));
+    }
+
+    /** Returns a stream of the contents of object ID, which must be in this
+     *  pack.  Objects stored whole are decompressed as they are read. */
+    InputStream open(String id) {
+        long offset = offsetOf(id);
+        Entry entry = readHeader(offset);
+        if (entry.delta) {
+            return new ByteArrayInputStream(resolve(offset));
+        }
+        return inflating(entry);
+    }
+
+    /** Returns the position in the sorted list of ids of this pack of object
+     *  ID, or -1 if it is absent. */
+    int find(String id) {
+        byte[] key = ObjectStore.toBytes(id);
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : index.getInt(FANOUT + (first - 1) * 4);
+        int hi = index.getInt(FANOUT + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareId(mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Closes the files of this pack. */
+    void close() {
+        try {
+            data.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the objects IDS of STORE into a new pack in DIR and returns
+     *  it.  NAMES maps the ids of blobs to the names of files they were
+     *  versions of, so that versions of the same file are deltified against
+     *  one another. */
+    static PackFile write(File dir, ObjectStore store, List<String> ids,
+                          Map<String, String> names) {
+        ArrayList<Candidate> order = new ArrayList<>();
+        for (String id : ids) {
+            order.add(new Candidate(id, store.type(id), store.size(id),
+                                    names.get(id)));
+        }
+        Collections.sort(order, CANDIDATE_ORDER);
+
+        dir.mkdirs();
+        try {
+            File tempPack = File.createTempFile("tmp_pack_", null, dir);
+            try (OutputStream out = new BufferedOutputStream(
+                     new FileOutputStream(tempPack), ObjectStore.BUFFER_SIZE)) {
+                CountingOutput counter = new CountingOutput(out);
+                counter.write(PACK_MAGIC);
+                ArrayDeque<Candidate> window = new ArrayDeque<>();
+                long windowBytes = 0;
+                for (int i = 0; i < order.size(); i += 1) {
+                    Candidate obj = order.get(i);
+                    obj.offset = counter.count;
+                    if (obj.size > MAX_DELTA_SIZE) {
+                        writeWhole(counter, store, obj);
+                        continue;
+                    }
+                    obj.data = store.read(obj.id);
+                    writeEntry(counter, obj, findBase(window, obj));
+                    window.addLast(obj);
+                    windowBytes += obj.size;
+                    while (window.size() > WINDOW
+                           || windowBytes > MAX_WINDOW_BYTES) {
+                        Candidate old = window.removeFirst();
+                        windowBytes -= old.size;
+                        old.data = null;
+                    }
+                }
+            }
+
+            String[] sorted = new String[order.size()];
+            for (int i = 0; i < sorted.length; i += 1) {
+                sorted[i] = order.get(i).id;
+            }
+            Arrays.sort(sorted);
+            String name = "pack-" + Utils.sha1((Object[]) sorted);
+            File tempIdx = File.createTempFile("tmp_idx_", null, dir);
+            writeIndex(tempIdx, order);
+            File packFile = new File(dir, name + PACK);
+            Files.move(tempIdx.toPath(), new File(dir, name + IDX).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempPack.toPath(), packFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            return new PackFile(packFile);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the member of WINDOW that OBJ is best stored as a delta
+     *  against, having set OBJ's delta accordingly, or null if OBJ is best
+     *  stored whole. */
+    private static Candidate findBase(ArrayDeque<Candidate> window,
+                                      Candidate obj) {
+        Candidate best = null;
+        long limit = obj.size / 2 - DELTA_OVERHEAD;
+        for (Candidate base : window) {
+            if (!base.type.equals(obj.type) || base.depth >= MAX_DEPTH
+                || base.size < obj.size / SIZE_RATIO
+                || obj.size < base.size / SIZE_RATIO) {
+                continue;
+            }
+            long maxSize = limit * (MAX_DEPTH - base.depth) / MAX_DEPTH;
+            byte[] delta = Delta.create(base.data, obj.data);
+            if (delta.length < maxSize
+                && (best == null || delta.length < obj.delta.length)) {
+                best = base;
+                obj.delta = delta;
+            }
+        }
+        if (best == null) {
+            obj.delta = null;
+        } else {
+            obj.depth = best.depth + 1;
+        }
+        return best;
+    }
+
+    /** Writes OBJ to OUT, as a delta against BASE if BASE is not null. */
+    private static void writeEntry(CountingOutput out, Candidate obj,
+                                   Candidate base) throws IOException {
+        byte[] payload = base == null ? obj.data : obj.delta;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream z =
+                 new DeflaterOutputStream(compressed, deflater)) {
+            z.write(payload);
+        } finally {
+            deflater.end();
+        }
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int code = TYPES.indexOf(obj.type);
+        header.write(base == null ? code : code | DELTA_FLAG);
+        Delta.writeVarInt(header, obj.size);
+        Delta.writeVarInt(header, compressed.size());
+        if (base != null) {
+            Delta.writeVarInt(header, obj.offset - base.offset);
+        }
+        header.writeTo(out);
+        compressed.writeTo(out);
+        obj.delta = null;
+    }
+
+    /** Writes OBJ, which is too large to deltify, to OUT whole, streaming
+     *  it from STORE. */
+    private static void writeWhole(CountingOutput out, ObjectStore store,
+                                   Candidate obj) throws IOException {
+        File temp = File.createTempFile("tmp_obj_", null);
+        try {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (InputStream in = store.open(obj.id);
+                 OutputStream z = new DeflaterOutputStream(
+                     new FileOutputStream(temp), deflater)) {
+                in.transferTo(z);
+            } finally {
+                deflater.end();
+            }
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            header.write(TYPES.indexOf(obj.type));
+            Delta.writeVarInt(header, obj.size);
+            Delta.writeVarInt(header, temp.length());
+            header.writeTo(out);
+            Files.copy(temp.toPath(), out);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Writes the index of the pack holding OBJECTS to FILE. */
+    private static void writeIndex(File file, List<Candidate> objects)
+        throws IOException {
+        ArrayList<Candidate> sorted = new ArrayList<>(objects);
+        sorted.sort(Comparator.comparing(c -> c.id));
+        int[] fanout = new int[256];
+        for (Candidate c : sorted) {
+            fanout[Integer.parseInt(c.id.substring(0, 2), 16)] += 1;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(IDX_MAGIC);
+            int total = 0;
+            for (int n : fanout) {
+                total += n;
+                out.writeInt(total);
+            }
+            for (Candidate c : sorted) {
+                out.write(ObjectStore.toBytes(c.id));
+            }
+            for (Candidate c : sorted) {
+                out.writeLong(c.offset);
+            }
+        }
+    }
+
+    /** Returns the offset of the entry of object ID, which must be in this
+     *  pack. */
+    private long offsetOf(String id) {
+        int k = find(id);
+        if (k < 0) {
+            throw new IllegalArgumentException("no object " + id);
+        }
+        return index.getLong(FANOUT + 256 * 4 + count * ID_LENGTH + k * 8);
+    }
+
+    /** Returns the id at position K of the sorted ids in this pack. */
+    private String idAt(int k) {
+        byte[] id = new byte[ID_LENGTH];
+        index.get(FANOUT + 256 * 4 + k * ID_LENGTH, id);
+        return ObjectStore.toHex(id);
+    }
+
+    /** Compares the id at position K of this pack's index with KEY. */
+    private int compareId(int k, byte[] key) {
+        int base = FANOUT + 256 * 4 + k * ID_LENGTH;
+        for (int i = 0; i < ID_LENGTH; i += 1) {
+            int c = (index.get(base + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the contents of the object whose entry is at OFFSET,
+     *  applying deltas against bases found in, or added to, the delta-base
+     *  cache. */
+    private byte[] resolve(long offset) {
+        ArrayList<Entry> chain = new ArrayList<>();
+        byte[] result = null;
+        long pos = offset;
+        while (true) {
+            if (pos != offset) {
+                result = cached(pos);
+                if (result != null) {
+                    break;
+                }
+            }
+            Entry entry = readHeader(pos);
+            if (!entry.delta) {
+                result = inflate(entry);
+                if (pos != offset) {
+                    cache(pos, result);
+                }
+                break;
+            }
+            chain.add(entry);
+            pos = entry.base;
+        }
+        for (int i = chain.size() - 1; i >= 0; i -= 1) {
+            Entry entry = chain.get(i);
+            result = Delta.apply(result, inflate(entry));
+            if (i > 0) {
+                cache(entry.offset, result);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the header of the entry at OFFSET. */
+    private Entry readHeader(long offset) {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_HEADER);
+        try {
+            data.read(buf, offset);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        byte[] header = buf.array();
+        int[] pos = { 1 };
+        Entry entry = new Entry();
+        entry.offset = offset;
+        entry.type = header[0] & (DELTA_FLAG - 1);
+        entry.delta = (header[0] & DELTA_FLAG) != 0;
+        entry.size = Delta.readVarInt(header, pos);
+        entry.length = Delta.readVarInt(header, pos);
+        if (entry.delta) {
+            entry.base = offset - Delta.readVarInt(header, pos);
+        }
+        entry.start = offset + pos[0];
+        return entry;
+    }
+
+    /** Returns the decompressed data of ENTRY. */
+    private byte[] inflate(Entry entry) {
+        try (InputStream in = inflating(entry)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns a stream of the decompressed data of ENTRY. */
+    private InputStream inflating(Entry entry) {
+        return new InflaterInputStream(new Section(entry.start, entry.length),
+                                       new Inflater(),
+                                       ObjectStore.BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+    }
+
+    /** Returns the cached contents of the entry at OFFSET, or null. */
+    private synchronized byte[] cached(long offset) {
+        return baseCache.get(offset);
+    }
+
+    /** Remembers that the entry at OFFSET holds CONTENTS, evicting the least
+     *  recently used bases while the cache is over its limit. */
+    private synchronized void cache(long offset, byte[] contents) {
+        if (contents.length > MAX_CACHE_BYTES / 4
+            || baseCache.containsKey(offset)) {
+            return;
+        }
+        baseCache.put(offset, contents);
+        cacheBytes += contents.length;
+        Iterator<byte[]> oldest = baseCache.values().iterator();
+        while (cacheBytes > MAX_CACHE_BYTES && oldest.hasNext()) {
+            cacheBytes -= oldest.next().length;
+            oldest.remove();
+        }
+    }
+
+    /** The decoded header of a pack entry. */
+    private static class Entry {
+        /** Offset of the entry in the pack. */
+        private long offset;
+        /** Index in TYPES of the type of object. */
+        private int type;
+        /** True iff the entry holds a delta. */
+        private boolean delta;
+        /** Size of the object. */
+        private long size;
+        /** Length of the compressed data. */
+        private long length;
+        /** Offset of the compressed data. */
+        private long start;
+        /** Offset of the entry of the base of a delta. */
+        private long base;
+    }
+
+    /** An object being written into a pack. */
+    private static class Candidate {
+        /** The object ID of type TYPE and SIZE bytes, a version of the file
+         *  NAME (or null if unknown). */
+        Candidate(String id, String type, long size, String name) {
+            this.id = id;
+            this.type = type;
+            this.size = size;
+            this.name = name;
+        }
+
+        /** The object's id. */
+        private final String id;
+        /** The object's type. */
+        private final String type;
+        /** The object's size. */
+        private final long size;
+        /** The name of a file the object was a version of, or null. */
+        private final String name;
+        /** The offset of the object's entry. */
+        private long offset;
+        /** The object's contents while it is in the delta window. */
+        private byte[] data;
+        /** The delta chosen for the object. */
+        private byte[] delta;
+        /** The length of the chain of deltas leading to the object. */
+        private int depth;
+    }
+
+    /** Order in which objects are written: objects of the same type and
+     *  file together, larger versions first, so that each is deltified
+     *  against a similar object that precedes it. */
+    private static final Comparator<Candidate> CANDIDATE_ORDER =
+        Comparator.<Candidate, String>comparing(c -> c.type)
+        .thenComparing(c -> c.name,
+                       Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(c -> -c.size)
+        .thenComparing(c -> c.id);
+
+    /** An output stream that counts the bytes written through it. */
+    private static class CountingOutput extends OutputStream {
+        /** A stream writing to OUT. */
+        CountingOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        /** The underlying stream. */
+        private final OutputStream out;
+        /** Number of bytes written so far. */
+        private long count;
+    }
+
+    /** A stream over LENGTH bytes of the pack starting at START, read with
+     *  positional reads so that several may be open at once. */
+    private class Section extends InputStream {
+        /** The section of LENGTH bytes at START. */
+        Section(long start, long length) {
+            pos = start;
+            end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= end) {
+                return -1;
+            }
+            len = (int) Math.min(len, end - pos);
+            int n = data.read(ByteBuffer.wrap(b, off, len), pos);
+            if (n > 0) {
+                pos += n;
+            }
+            return n;
+        }
+
+        /** Position of the next byte to be read. */
+        private long pos;
+        /** Position just past the section. */
+        private final long end;
+    }
+
+    /** Suffix of pack files. */
+    static final String PACK = ".pack";
+    /** Suffix of index files. */
+    static final String IDX = ".idx";
+    /** Magic bytes beginning a pack. */
+    private static final byte[] PACK_MAGIC = { 'G', 'P', 'A', 'K' };
+    /** Magic bytes beginning an index. */
+    private static final byte[] IDX_MAGIC = { 'G', 'I', 'D', 'X' };
+    /** Offset of the fanout table in an index. */
+    private static final int FANOUT = 4;
+    /** Length of an object id in bytes. */
+    private static final int ID_LENGTH = ObjectStore.ID_LENGTH;
+    /** Bit of the type byte marking a delta entry. */
+    private static final int DELTA_FLAG = 0x80;
+    /** Most bytes an entry's header can occupy. */
+    private static final int MAX_HEADER = 1 + 3 * 10;
+    /** Number of preceding objects considered as delta bases. */
+    private static final int WINDOW = 10;
+    /** Most bytes of content held by the delta window. */
+    private static final long MAX_WINDOW_BYTES = 256L << 20;
+    /** Objects larger than this are never deltified. */
+    private static final long MAX_DELTA_SIZE = 64L << 20;
+    /** Longest chain of deltas allowed. */
+    private static final int MAX_DEPTH = 50;
+    /** Approximate cost of a delta entry beyond its instructions. */
+    private static final int DELTA_OVERHEAD = 20;
+    /** Objects whose sizes differ by more than this factor are not
+     *  deltified against each other. */
+    private static final int SIZE_RATIO = 32;
+    /** Most bytes of delta bases kept in the cache. */
+    private static final long MAX_CACHE_BYTES = 32L << 20;
+
+    /** The file holding the entries. */
+    private final File pack;
+    /** The memory-mapped index. */
+    private final MappedByteBuffer index;
+    /** The channel reading entries. */
+    private final FileChannel data;
+    /** Number of objects in the pack. */
+    private final int count;
+    /** Resolved delta bases, by offset, least recently used first. */
+    private final LinkedHashMap<Long, byte[]> baseCache =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Total size of the contents of BASECACHE. */
+    private long cacheBytes;
+}
@@ -0,0 +1,352 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/** Garbage collection of the object store, by mark and sweep.  Every
+ *  object reachable from a branch or from HEAD (commits, through their
+ *  parents; their trees and blobs; and the chunks of chunked blobs) or
+ *  named by the index is live.  The live objects are packed into a single
+ *  new pack, and unreachable loose objects are deleted once they are older
+ *  than a grace period, which protects objects just written by a command
+ *  that has not yet pointed a ref at them.  Unreachable objects found in
+ *  old packs are first unpacked, dated from their pack, so that they get
+ *  the same grace.  An unreachable commit still within its grace keeps
+ *  its history, trees and blobs too, so that it stays whole until it is
+ *  itself deleted.  Once commits are deleted, the commit log, graph and
+ *  message index are compacted to leave them out (see CommitStore.compact),
+ *  so that log, global-log, find and abbreviated ids never name them.
+ *
+ *  For each branch, the set of objects reachable from it is saved as a
+ *  compressed bitmap (see Bitmap) over the positions of objects in the new
+ *  pack, in the file pack-NAME.bitmap beside it, which starts with the
+ *  magic bytes "GBMP", a version number and the number of bitmaps, each
+ *  then given as the branch's name, the id of the commit it was at and the
+ *  bitmap.  Questions of reachability, such as how many objects a branch
+ *  has, are then answered from the bitmaps, walking only the commits made
+ *  since.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Pruner {
+
+    /** The default grace period of unreachable loose objects, in
+     *  milliseconds. */
+    static final long GRACE = TimeUnit.DAYS.toMillis(14);
+
+    /** Extension of the file of bitmaps beside a pack. */
+    static final String BITMAP = ".bitmap";
+
+    /** A collector of the objects in OBJECTS of the commits in COMMITS,
+     *  whose branches are in REFS. */
+    Pruner(CommitStore commits, Refs refs, ObjectStore objects) {
+        this.commits = commits;
+        this.refs = refs;
+        this.objects = objects;
+    }
+
+    /** Collects the garbage of the object store, treating the ids in
+     *  INDEX as live, and deleting unreachable objects that are more than
+     *  GRACE milliseconds old.  Returns the number of objects deleted. */
+    int run(Index index, long grace) {
+        long now = System.currentTimeMillis();
+        HashMap<String, String> names = new HashMap<>();
+        HashSet<String> live = new HashSet<>();
+        TreeMap<String, String> tips = new TreeMap<>();
+        HashMap<String, List<String>> reached = new HashMap<>();
+        try (Trace.Phase p = Trace.phase("gc mark")) {
+            ArrayList<String> roots = new ArrayList<>();
+            for (String branch : refs.branches()) {
+                String tip = refs.branch(branch);
+                if (tip != null) {
+                    tips.put(branch, tip);
+                    roots.add(tip);
+                }
+            }
+            if (refs.head() != null) {
+                roots.add(refs.head());
+            }
+            for (String tip : roots) {
+                if (!reached.containsKey(tip)) {
+                    ArrayList<String> ids = new ArrayList<>();
+                    walk(tip, Collections.emptySet(), ids, names);
+                    reached.put(tip, ids);
+                    live.addAll(ids);
+                }
+            }
+            for (String id : commits.ids()) {
+                if (!live.contains(id) && now - modified(id) <= grace) {
+                    ArrayList<String> ids = new ArrayList<>();
+                    walk(id, live, ids, names);
+                    live.addAll(ids);
+                }
+            }
+            for (Index.Entry entry : index.entries()) {
+                live.add(entry.getId());
+                live.addAll(chunks(entry.getId()));
+            }
+        }
+
+        int deleted = 0;
+        HashSet<String> loose = new HashSet<>(objects.looseIds());
+        ArrayList<String> kept = new ArrayList<>();
+        for (String id : loose) {
+            if (live.contains(id)) {
+                kept.add(id);
+            }
+        }
+        for (PackFile pack : objects.packs()) {
+            long packed = pack.getFile().lastModified();
+            for (String id : pack.ids()) {
+                if (live.contains(id)) {
+                    kept.add(id);
+                } else if (loose.contains(id)) {
+                    continue;
+                } else if (now - packed <= grace) {
+                    objects.unpack(id, packed);
+                } else {
+                    deleted += 1;
+                }
+            }
+        }
+        if (!kept.isEmpty()) {
+            try (Trace.Phase p = Trace.phase("gc repack")) {
+                PackFile pack = objects.repack(kept, names);
+                writeBitmaps(pack, tips, reached);
+            }
+        }
+        try (Trace.Phase p = Trace.phase("gc sweep")) {
+            for (String id : objects.looseIds()) {
+                if (!live.contains(id)
+                    && now - objects.fileFor(id).lastModified() > grace) {
+                    objects.delete(id);
+                    deleted += 1;
+                }
+            }
+            commits.compact();
+        }
+        return deleted;
+    }
+
+    /** Returns the number of objects reachable from commit TIP.  Where the
+     *  walk of its history meets a commit whose reachable objects were
+     *  saved as a bitmap, the bitmap is used and that commit's history is
+     *  not walked. */
+    int count(String tip) {
+        PackFile pack = null;
+        Map<String, Bitmap> saved = Collections.emptyMap();
+        for (PackFile candidate : objects.packs()) {
+            File file = bitmapFile(candidate);
+            if (file.isFile()) {
+                pack = candidate;
+                saved = readBitmaps(file);
+                break;
+            }
+        }
+        Bitmap result = new Bitmap();
+        ArrayList<String> ids = new ArrayList<>();
+        for (String stop : walk(tip, saved.keySet(), ids, new HashMap<>())) {
+            result.or(saved.get(stop));
+        }
+        HashSet<String> unpacked = new HashSet<>();
+        for (String id : ids) {
+            int pos = pack == null ? -1 : pack.find(id);
+            if (pos >= 0) {
+                result.set(pos);
+            } else {
+                unpacked.add(id);
+            }
+        }
+        return result.cardinality() + unpacked.size();
+    }
+
+    /** Adds to IDS the ids of the objects reachable from commit TIP,
+     *  adding a path for each blob to NAMES, and returns those of the
+     *  commits in STOP that were reached.  The history of a commit in STOP
+     *  is not walked, and its objects are not added. */
+    private List<String> walk(String tip, Set<String> stop,
+                              Collection<String> ids,
+                              Map<String, String> names) {
+        ArrayList<String> stopped = new ArrayList<>();
+        ArrayList<String> reached = new ArrayList<>();
+        CommitGraph graph = commits.graph();
+        boolean[] visited = new boolean[graph.size()];
+        ArrayDeque<Integer> rows = new ArrayDeque<>();
+        int start = graph.find(tip);
+        if (start >= 0) {
+            rows.push(start);
+            visited[start] = true;
+        }
+        while (!rows.isEmpty()) {
+            int row = rows.pop();
+            String id = graph.idAt(row);
+            if (stop.contains(id)) {
+                stopped.add(id);
+                continue;
+            }
+            reached.add(id);
+            for (int parent : new int[] {graph.parent(row),
+                                         graph.secondParent(row)}) {
+                if (parent >= 0 && !visited[parent]) {
+                    visited[parent] = true;
+                    rows.push(parent);
+                }
+            }
+        }
+        addObjects(reached, ids, names);
+        return stopped;
+    }
+
+    /** Adds to IDS the ids of the commits COMMITIDS and of their trees,
+     *  blobs and chunks, adding a path for each blob to NAMES. */
+    private void addObjects(List<String> commitIds, Collection<String> ids,
+                            Map<String, String> names) {
+        ObjectIdMap<Boolean> trees = new ObjectIdMap<>();
+        HashMap<String, String> blobs = new HashMap<>();
+        for (String id : commitIds) {
+            ids.add(id);
+            Commit c = commits.get(id);
+            if (c != null) {
+                Tree.collect(objects, c.getTreeHash(), "", trees, blobs);
+            }
+        }
+        for (ObjectId tree : trees.keys()) {
+            ids.add(tree.name());
+        }
+        for (Map.Entry<String, String> blob : blobs.entrySet()) {
+            ids.add(blob.getKey());
+            ids.addAll(chunks(blob.getKey()));
+            names.putIfAbsent(blob.getKey(), blob.getValue());
+        }
+    }
+
+    /** Returns the time, in milliseconds, at which object ID was written:
+     *  that of its loose file, or else that of the pack holding it. */
+    private long modified(String id) {
+        File loose = objects.fileFor(id);
+        if (loose.isFile()) {
+            return loose.lastModified();
+        }
+        for (PackFile pack : objects.packs()) {
+            if (pack.find(id) >= 0) {
+                return pack.getFile().lastModified();
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the ids of the chunks of blob ID, which are empty unless it
+     *  is stored in chunks. */
+    private List<String> chunks(String id) {
+        List<String> result = chunkCache.get(id);
+        if (result == null) {
+            result = Collections.emptyList();
+            if (objects.contains(id)
+                && objects.type(id).equals(ObjectStore.CHUNKS)) {
+                result = ObjectStore.chunkIds(objects.read(id));
+            }
+            chunkCache.put(id, result);
+        }
+        return result;
+    }
+
+    /** Writes the bitmaps of PACK: for each of the branches TIPS, the
+     *  positions in PACK of the objects reachable from the commit it is at,
+     *  as listed in REACHED. */
+    private static void writeBitmaps(PackFile pack, Map<String, String> tips,
+                                     Map<String, List<String>> reached) {
+        File file = bitmapFile(pack);
+        try {
+            File temp = File.createTempFile("tmp_bitmap_", null,
+                                            file.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(tips.size());
+                for (Map.Entry<String, String> e : tips.entrySet()) {
+                    Bitmap bitmap = new Bitmap();
+                    for (String id : reached.get(e.getValue())) {
+                        int pos = pack.find(id);
+                        if (pos >= 0) {
+                            bitmap.set(pos);
+                        }
+                    }
+                    out.writeUTF(e.getKey());
+                    out.write(ObjectStore.toBytes(e.getValue()));
+                    bitmap.write(out);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the bitmaps saved in FILE, by the id of the commit each was
+     *  made for. */
+    private static Map<String, Bitmap> readBitmaps(File file) {
+        HashMap<String, Bitmap> result = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readInt() != VERSION) {
+                throw new IllegalArgumentException("corrupt bitmaps " + file);
+            }
+            int count = in.readInt();
+            byte[] tip = new byte[ObjectStore.ID_LENGTH];
+            for (int i = 0; i < count; i += 1) {
+                in.readUTF();
+                in.readFully(tip);
+                result.put(ObjectStore.toHex(tip), Bitmap.read(in));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the file of the bitmaps of PACK. */
+    private static File bitmapFile(PackFile pack) {
+        String name = pack.getFile().getName();
+        return new File(pack.getFile().getParentFile(),
+                        name.substring(0, name.length()
+                                       - PackFile.PACK.length()) + BITMAP);
+    }
+
+    /** Magic bytes beginning a file of bitmaps. */
+    private static final byte[] MAGIC = { 'G', 'B', 'M', 'P' };
+    /** Version of the format of files of bitmaps. */
+    private static final int VERSION = 1;
+
+    /** The commits of the repository. */
+    private final CommitStore commits;
+    /** The branches of the repository. */
+    private final Refs refs;
+    /** The object store collected. */
+    private final ObjectStore objects;
+    /** The chunks of the blobs seen so far, by blob id. */
+    private final HashMap<String, List<String>> chunkCache = new HashMap<>();
+}
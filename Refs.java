@@ -0,0 +1,201 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The branches of a repository and which of them is current.  Each branch
+ *  is a small text file, refs/heads/NAME, holding the id of the commit it
+ *  points to, so that reading or moving one branch touches only that file.
+ *  Repositories with many branches may gather them into the single file
+ *  packed-refs, which holds one line "ID refs/heads/NAME" per branch, sorted
+ *  by name; a loose ref overrides a packed one of the same name.  HEAD holds
+ *  "ref: refs/heads/NAME", naming the current branch, so the head commit is
+ *  always the one the current branch points to.
+ *
+ *  All changes go through the repository's transaction, so those made by
+ *  one command are committed together.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Refs {
+
+    /** The refs of the repository whose metadata is in directory DIR, which
+     *  are changed through TRANSACTION. */
+    Refs(String dir, Transaction transaction) {
+        this.dir = dir;
+        this.transaction = transaction;
+    }
+
+    /** Returns the refs of the repository in the current directory. */
+    static Refs instance() {
+        if (instance == null) {
+            instance = new Refs(".gitlet", Transaction.instance());
+        }
+        return instance;
+    }
+
+    /** Forgets the refs of the repository in the current directory, so that
+     *  the next call of instance() reads it afresh from disk. */
+    static void invalidate() {
+        instance = null;
+    }
+
+    /** Returns true iff NAME may name a branch. */
+    static boolean isValidName(String name) {
+        return name.matches("\\w[\\w.-]*(/\\w[\\w.-]*)*")
+            && !name.contains("..") && !name.endsWith(".");
+    }
+
+    /** Returns the name of the current branch. */
+    String currentBranch() {
+        byte[] text = transaction.read(dir + "/" + HEAD);
+        if (text == null) {
+            return null;
+        }
+        String ref = new String(text, StandardCharsets.UTF_8).trim();
+        return ref.substring((SYMREF + HEADS).length());
+    }
+
+    /** Makes NAME the current branch. */
+    void setCurrentBranch(String name) {
+        transaction.write(dir + "/" + HEAD,
+                          (SYMREF + HEADS + name + "\n")
+                          .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the id of the head commit, the one the current branch points
+     *  to. */
+    String head() {
+        String current = currentBranch();
+        return current == null ? null : branch(current);
+    }
+
+    /** Returns the id of the commit branch NAME points to, or null if there
+     *  is no such branch.  Only the branch's own file is read, unless the
+     *  branch is packed. */
+    String branch(String name) {
+        if (!isValidName(name)) {
+            return null;
+        }
+        byte[] text = transaction.read(loose(name));
+        if (text != null) {
+            return new String(text, StandardCharsets.US_ASCII).trim();
+        }
+        return packed().get(name);
+    }
+
+    /** Points branch NAME, which is created if need be, at commit ID. */
+    void setBranch(String name, String id) {
+        transaction.write(loose(name),
+                          (id + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Deletes branch NAME. */
+    void deleteBranch(String name) {
+        transaction.delete(loose(name));
+        TreeMap<String, String> packed = packed();
+        if (packed.remove(name) != null) {
+            writePacked(packed);
+        }
+    }
+
+    /** Returns the names of all branches, in order. */
+    List<String> branches() {
+        TreeMap<String, String> all = packed();
+        File heads = new File(dir, HEADS);
+        listLoose(heads, "", all);
+        String prefix = loose("");
+        for (Map.Entry<String, byte[]> e
+                 : transaction.pending(prefix).entrySet()) {
+            String name = e.getKey().substring(prefix.length());
+            if (e.getValue() == null) {
+                all.remove(name);
+            } else {
+                all.put(name, "");
+            }
+        }
+        return new ArrayList<>(all.keySet());
+    }
+
+    /** Moves every loose branch into packed-refs. */
+    void pack() {
+        TreeMap<String, String> packed = packed();
+        for (String name : branches()) {
+            String id = branch(name);
+            packed.put(name, id);
+            transaction.delete(loose(name));
+        }
+        writePacked(packed);
+    }
+
+    /** Returns the packed branches, mapped to their commit ids. */
+    private TreeMap<String, String> packed() {
+        TreeMap<String, String> result = new TreeMap<>();
+        byte[] text = transaction.read(dir + "/" + PACKED);
+        if (text == null) {
+            return result;
+        }
+        for (String line : new String(text, StandardCharsets.UTF_8)
+                 .split("\n")) {
+            int space = line.indexOf(' ');
+            if (space > 0 && line.startsWith(HEADS, space + 1)) {
+                result.put(line.substring(space + 1 + HEADS.length()),
+                           line.substring(0, space));
+            }
+        }
+        return result;
+    }
+
+    /** Replaces packed-refs with the branches in PACKED. */
+    private void writePacked(TreeMap<String, String> packed) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> e : packed.entrySet()) {
+            text.append(e.getValue()).append(' ').append(HEADS)
+                .append(e.getKey()).append('\n');
+        }
+        transaction.write(dir + "/" + PACKED,
+                          text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Adds to NAMES the branches stored as files under DIRECTORY, whose
+     *  names begin with PREFIX. */
+    private static void listLoose(File directory, String prefix,
+                                  TreeMap<String, String> names) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listLoose(file, prefix + file.getName() + "/", names);
+            } else if (isValidName(prefix + file.getName())) {
+                names.put(prefix + file.getName(), "");
+            }
+        }
+    }
+
+    /** Returns the name of the loose ref file of branch NAME. */
+    private String loose(String name) {
+        return dir + "/" + HEADS + name;
+    }
+
+    /** File naming the current branch. */
+    private static final String HEAD = "HEAD";
+    /** File holding packed branches. */
+    private static final String PACKED = "packed-refs";
+    /** Directory, and prefix of the names, of branches. */
+    private static final String HEADS = "refs/heads/";
+    /** Prefix of the contents of HEAD. */
+    private static final String SYMREF = "ref: ";
+
+    /** The refs of the repository in the current directory. */
+    private static Refs instance;
+
+    /** The directory holding the repository's metadata. */
+    private final String dir;
+    /** The transaction through which refs are read and changed. */
+    private final Transaction transaction;
+}
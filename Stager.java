@@ -0,0 +1,201 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Stages many files at once.  The files named by the arguments of add
+ *  (plain paths, directories, which are added recursively, and glob
+ *  patterns) are hashed and written to the object store in parallel on a
+ *  fork-join pool, each in a single read; the caller then records their
+ *  ids in the index in a single pass.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Stager {
+
+    /** A stager that consults INDEX to skip unchanged files and compares
+     *  the files it stages against those of commit HEAD. */
+    Stager(Index index, Commit head) {
+        this.index = index;
+        this.head = head;
+    }
+
+    /** Returns the working files named by PATTERNS, as paths relative to
+     *  the working directory, in order and without duplicates.  Adds to
+     *  MISSING any pattern that is a plain path naming no file. */
+    static List<String> expand(List<String> patterns, List<String> missing) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String pattern : patterns) {
+            File file = new File(pattern);
+            if (file.isFile()) {
+                result.add(relative(file.toPath()));
+            } else if (file.isDirectory()) {
+                walk(file.toPath(), null, result);
+            } else if (isGlob(pattern)) {
+                PathMatcher matcher = FileSystems.getDefault()
+                    .getPathMatcher("glob:" + relative(Paths.get(pattern)));
+                walk(Paths.get("."), matcher, result);
+            } else {
+                missing.add(pattern);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Hashes each of FILES and writes it to the object store, in
+     *  parallel, returning what was found out about each file that may need
+     *  to be staged.  Files whose index entries show them to be unchanged
+     *  are not read. */
+    List<Result> stage(List<String> files) {
+        try (Trace.Phase p = Trace.phase("stage")) {
+            return POOL.invoke(new StageTask(files, 0, files.size()));
+        }
+    }
+
+    /** What was found out about one file. */
+    static class Result {
+        /** The outcome of staging PATH, whose contents have hash ID, and
+         *  whose stat data are STAT.  CHANGED is true iff it differs from
+         *  the head commit's version. */
+        Result(String path, String id, Index.Entry stat, boolean changed) {
+            this.path = path;
+            this.id = id;
+            this.stat = stat;
+            this.changed = changed;
+        }
+
+        /** The file's path. */
+        final String path;
+        /** The hash of the file's contents. */
+        final String id;
+        /** The file's stat data. */
+        final Index.Entry stat;
+        /** True iff the file differs from the head commit's version. */
+        final boolean changed;
+    }
+
+    /** Returns the result of staging PATH, or null if its index entry
+     *  shows it to be unchanged. */
+    private Result stageOne(String path) {
+        Index.Entry stat = Index.stat(path);
+        Index.Entry entry = index.get(path);
+        if (stat == null || entry != null && index.isClean(entry, stat)) {
+            return null;
+        }
+        String hash = ObjectStore.instance().insert(ObjectStore.BLOB,
+                                                    new File(path));
+        return new Result(path, hash, stat,
+                          !hash.equals(head.getFileHash(path)));
+    }
+
+    /** Stages the files from FROM to TO of a list, splitting the work in
+     *  half until each piece is small. */
+    private class StageTask extends RecursiveTask<List<Result>> {
+        /** A task staging FILES from FROM to TO. */
+        StageTask(List<String> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Result> compute() {
+            ArrayList<Result> results = new ArrayList<>();
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i += 1) {
+                    Result r = stageOne(files.get(i));
+                    if (r != null) {
+                        results.add(r);
+                    }
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                StageTask left = new StageTask(files, from, mid);
+                left.fork();
+                results.addAll(new StageTask(files, mid, to).compute());
+                results.addAll(left.join());
+            }
+            return results;
+        }
+
+        /** The list of files. */
+        private final List<String> files;
+        /** The first file to stage. */
+        private final int from;
+        /** The end of the files to stage. */
+        private final int to;
+    }
+
+    /** Adds to RESULT the relative paths of the plain files under ROOT that
+     *  MATCHER (if not null) accepts, skipping the repository itself. */
+    private static void walk(Path root, PathMatcher matcher,
+                             TreeSet<String> result) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(
+                    Path dir, BasicFileAttributes attrs) {
+                    if (dir.getFileName() != null
+                        && dir.getFileName().toString().equals(".gitlet")) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file,
+                                                 BasicFileAttributes attrs) {
+                    String name = relative(file);
+                    if (attrs.isRegularFile()
+                        && (matcher == null
+                            || matcher.matches(Paths.get(name)))) {
+                        result.add(name);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns PATH relative to the working directory, with '/' between
+     *  its components. */
+    static String relative(Path path) {
+        Path rel = path.normalize();
+        if (rel.isAbsolute()) {
+            rel = Paths.get("").toAbsolutePath().relativize(rel);
+        }
+        return rel.toString().replace(File.separatorChar, '/');
+    }
+
+    /** Returns true iff PATTERN contains glob metacharacters. */
+    private static boolean isGlob(String pattern) {
+        return pattern.matches(".*[*?\\[{].*");
+    }
+
+    /** Number of files below which a task stages them itself. */
+    private static final int THRESHOLD = 16;
+
+    /** The pool staging files.  Staging is bound as much by the disk as by
+     *  the processors, so the pool has more threads than processors. */
+    private static final ForkJoinPool POOL =
+        new ForkJoinPool(2 * Runtime.getRuntime().availableProcessors());
+
+    /** The index consulted to skip unchanged files. */
+    private final Index index;
+    /** The commit staged files are compared against. */
+    private final Commit head;
+}
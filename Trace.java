@@ -0,0 +1,240 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Tracing of one command: how long it spent in each phase, how much I/O
+ *  it did, and how much it allocated and collected.  Tracing is off unless
+ *  the command is given the option --trace (or --trace=json), or the
+ *  environment variable GITLET_TRACE is set to anything but "", "0" or
+ *  "false" (or to "json"), in which case a summary is printed to standard
+ *  error once the command finishes, as text or as a JSON object.
+ *
+ *  Phases are timed by wrapping them in phase(NAME), and are counted and
+ *  timed by name, so a phase entered many times (serialize, say) shows up
+ *  once, with the number of calls and their total time.  Phases may nest,
+ *  so their times overlap.  Counters are bumped by count.  Both may be used
+ *  from any thread, and cost a single test of a flag when tracing is off.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Trace {
+
+    /** Counter of files whose stat data were read. */
+    static final int FILES_STATTED = 0;
+    /** Counter of bytes fed to SHA-1. */
+    static final int BYTES_HASHED = 1;
+    /** Counter of bytes of objects read from the object store. */
+    static final int OBJECT_BYTES_READ = 2;
+    /** Counter of bytes of objects written to the object store. */
+    static final int OBJECT_BYTES_WRITTEN = 3;
+
+    /** The option turning tracing on. */
+    static final String OPTION = "--trace";
+
+    /** The environment variable turning tracing on. */
+    static final String VARIABLE = "GITLET_TRACE";
+
+    /** A phase being timed, which ends when it is closed. */
+    interface Phase extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** Returns ARGS, preceded by the option turning tracing on if the
+     *  environment asks for it and ARGS do not already. */
+    static String[] withEnvironment(String... args) {
+        String value = System.getenv(VARIABLE);
+        if (value == null || value.isEmpty() || value.equals("0")
+            || value.equalsIgnoreCase("false")
+            || args.length > 0 && args[0].startsWith(OPTION)) {
+            return args;
+        }
+        String[] result = new String[args.length + 1];
+        result[0] = value.equals(JSON) ? OPTION + "=" + JSON : OPTION;
+        System.arraycopy(args, 0, result, 1, args.length);
+        return result;
+    }
+
+    /** Starts tracing if ARGS begin with the tracing option, and returns
+     *  the rest of ARGS. */
+    static String[] start(String... args) {
+        enabled = args.length > 0 && (args[0].equals(OPTION)
+                                      || args[0].equals(OPTION + "=" + JSON));
+        if (!enabled) {
+            return args;
+        }
+        json = args[0].endsWith(JSON);
+        PHASES.clear();
+        for (LongAdder counter : COUNTERS) {
+            counter.reset();
+        }
+        startAllocated = allocated();
+        startCollections = collections();
+        startCollectionMillis = collectionMillis();
+        startNanos = System.nanoTime();
+        return Arrays.copyOfRange(args, 1, args.length);
+    }
+
+    /** Returns the phase NAME, which starts now. */
+    static Phase phase(String name) {
+        if (!enabled) {
+            return NONE;
+        }
+        long start = System.nanoTime();
+        return () -> {
+            LongAdder[] timer = PHASES.computeIfAbsent(
+                name, k -> new LongAdder[] {new LongAdder(), new LongAdder()});
+            timer[0].increment();
+            timer[1].add(System.nanoTime() - start);
+        };
+    }
+
+    /** Adds AMOUNT to COUNTER. */
+    static void count(int counter, long amount) {
+        if (enabled) {
+            COUNTERS[counter].add(amount);
+        }
+    }
+
+    /** Stops tracing, printing the summary of the command to standard
+     *  error. */
+    static void finish() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        long wall = System.nanoTime() - startNanos;
+        ArrayList<Map.Entry<String, LongAdder[]>> sorted =
+            new ArrayList<>(PHASES.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue()[1].sum(),
+                                           a.getValue()[1].sum()));
+        long[] totals = {
+            COUNTERS[0].sum(), COUNTERS[1].sum(), COUNTERS[2].sum(),
+            COUNTERS[3].sum(), allocated() - startAllocated,
+            collections() - startCollections,
+            collectionMillis() - startCollectionMillis,
+        };
+        PrintStream out = System.err;
+        if (json) {
+            StringBuilder text = new StringBuilder();
+            text.append("{\"wallMs\":").append(millis(wall))
+                .append(",\"phases\":{");
+            for (int i = 0; i < sorted.size(); i += 1) {
+                Map.Entry<String, LongAdder[]> e = sorted.get(i);
+                text.append(i == 0 ? "" : ",").append('"')
+                    .append(e.getKey()).append("\":{\"calls\":")
+                    .append(e.getValue()[0].sum()).append(",\"ms\":")
+                    .append(millis(e.getValue()[1].sum())).append('}');
+            }
+            text.append('}');
+            for (int i = 0; i < totals.length; i += 1) {
+                text.append(",\"").append(KEYS[i]).append("\":")
+                    .append(totals[i]);
+            }
+            out.println(text.append('}'));
+        } else {
+            out.printf("=== Trace ===%n%-28s %10s ms%n", "wall",
+                       millis(wall));
+            for (Map.Entry<String, LongAdder[]> e : sorted) {
+                out.printf("%-28s %10s ms %8d calls%n", e.getKey(),
+                           millis(e.getValue()[1].sum()),
+                           e.getValue()[0].sum());
+            }
+            for (int i = 0; i < totals.length; i += 1) {
+                out.printf("%-28s %10d%n", LABELS[i], totals[i]);
+            }
+        }
+        out.flush();
+    }
+
+    /** Returns NANOS as milliseconds, to three places. */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /** Returns the bytes allocated so far by the live threads of this JVM,
+     *  or -1 if it cannot tell. */
+    private static long allocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        long result = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads)
+                 .getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            result += Math.max(bytes, 0);
+        }
+        return result;
+    }
+
+    /** Returns the number of garbage collections so far. */
+    private static long collections() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc
+                 : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(gc.getCollectionCount(), 0);
+        }
+        return result;
+    }
+
+    /** Returns the milliseconds spent collecting garbage so far. */
+    private static long collectionMillis() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc
+                 : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(gc.getCollectionTime(), 0);
+        }
+        return result;
+    }
+
+    /** Value of the option and variable asking for JSON. */
+    private static final String JSON = "json";
+
+    /** Labels of the totals in a text summary: the COUNTERS, then the
+     *  allocation and collection figures. */
+    private static final String[] LABELS = {
+        "files stat'd", "bytes hashed", "object bytes read",
+        "object bytes written", "bytes allocated", "gc collections",
+        "gc ms",
+    };
+
+    /** Keys of the totals in a JSON summary, in the order of LABELS. */
+    private static final String[] KEYS = {
+        "filesStatted", "bytesHashed", "objectBytesRead",
+        "objectBytesWritten", "bytesAllocated", "gcCount", "gcMs",
+    };
+
+    /** The phase returned when tracing is off. */
+    private static final Phase NONE = () -> { };
+
+    /** The COUNTERS, indexed by FILES_STATTED and the like. */
+    private static final LongAdder[] COUNTERS = {
+        new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(),
+    };
+
+    /** The number of calls and total nanoseconds of each phase, by
+     *  name. */
+    private static final ConcurrentHashMap<String, LongAdder[]> PHASES =
+        new ConcurrentHashMap<>();
+
+    /** True iff the current command is being traced. */
+    private static volatile boolean enabled;
+    /** True iff the summary is printed as JSON. */
+    private static boolean json;
+    /** The time the command started. */
+    private static long startNanos;
+    /** The bytes allocated when the command started. */
+    private static long startAllocated;
+    /** The collections made when the command started. */
+    private static long startCollections;
+    /** The milliseconds of collection when the command started. */
+    private static long startCollectionMillis;
+}
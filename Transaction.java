@@ -0,0 +1,334 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/** The metadata files of a repository (HEAD and the branch refs), changed
+ *  together.  The writes of one command are held
+ *  until the command finishes, then committed together: they are first
+ *  written to a journal, which is made durable with a single fsync and
+ *  moved into place atomically, and only then written to their own files,
+ *  each through a temporary file and an atomic rename, without fsyncs of
+ *  their own.  A crash at any point leaves either the old or the new
+ *  contents of every file once the journal is replayed, which happens
+ *  before the metadata is first read.
+ *
+ *  The files written by a journal are not yet known to be durable, so the
+ *  next journal carries their contents along with its own.  Once it grows
+ *  past a limit, the files are fsynced and the journal starts afresh.
+ *
+ *  Some files are too large to rewrite for each command and are only ever
+ *  appended to, such as the commit log and the commit graph.  They are
+ *  written as the command goes, outside the journal, and the command
+ *  reports each one it appends to.  When it commits, those files are
+ *  fsynced and the journal records their lengths; replaying the journal
+ *  truncates them back to the lengths it records.  Rows appended by a
+ *  command that crashed or failed before committing are thus dropped
+ *  before anything reads them.
+ *
+ *  A journal holds the MAGIC bytes, the number of files, and for each the
+ *  name, length and contents (or a length of -1 for a file that is
+ *  deleted), then the number of appended files, and for each the name and
+ *  committed length, followed by the SHA-1 hash of everything before it.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Transaction {
+
+    /** The transaction whose journal is the file JOURNAL. */
+    Transaction(File journal) {
+        this.journal = journal;
+    }
+
+    /** Returns the transaction of the repository in the current
+     *  directory. */
+    static Transaction instance() {
+        if (instance == null) {
+            instance = new Transaction(new File(".gitlet/journal"));
+        }
+        return instance;
+    }
+
+    /** Forgets the transaction of the repository in the current directory,
+     *  along with any writes not yet committed, so that the next call of
+     *  instance() reads it afresh from disk. */
+    static void invalidate() {
+        instance = null;
+    }
+
+    /** Returns the contents of the metadata file NAME, as last written in
+     *  this transaction or else as stored, or null if there is none. */
+    byte[] read(String name) {
+        recover();
+        if (pending.containsKey(name)) {
+            return pending.get(name);
+        }
+        File file = new File(name);
+        return file.isFile() ? Utils.readContents(file) : null;
+    }
+
+    /** Returns the writes of this transaction to files whose names begin
+     *  with PREFIX, mapped to their new contents, or to null if they are
+     *  deleted. */
+    Map<String, byte[]> pending(String prefix) {
+        LinkedHashMap<String, byte[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> e : pending.entrySet()) {
+            if (e.getKey().startsWith(prefix)) {
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+        return result;
+    }
+
+    /** Sets the contents of the metadata file NAME to CONTENTS when this
+     *  transaction commits. */
+    void write(String name, byte[] contents) {
+        recover();
+        pending.put(name, contents);
+    }
+
+    /** Deletes the metadata file NAME when this transaction commits. */
+    void delete(String name) {
+        recover();
+        pending.put(name, null);
+    }
+
+    /** Records that this transaction appended to the file NAME, whose
+     *  length is to be committed along with the other writes. */
+    void appended(String name) {
+        recover();
+        appending.add(name);
+    }
+
+    /** Makes all writes of this transaction durable and applies them.  Does
+     *  nothing if there are none, or if there is no repository. */
+    void commit() {
+        if (pending.isEmpty() && appending.isEmpty()
+            || !journal.getParentFile().isDirectory()) {
+            pending.clear();
+            appending.clear();
+            return;
+        }
+        LinkedHashMap<String, byte[]> logged = new LinkedHashMap<>();
+        LinkedHashMap<String, Long> lengths = new LinkedHashMap<>();
+        Map<String, byte[]> previous = readJournal(lengths);
+        if (previous != null) {
+            if (journal.length() < CHECKPOINT) {
+                logged.putAll(previous);
+            } else {
+                for (String name : previous.keySet()) {
+                    File file = new File(name);
+                    force(file.exists() ? file
+                          : file.getAbsoluteFile().getParentFile());
+                }
+            }
+        }
+        logged.putAll(pending);
+        for (String name : appending) {
+            File file = new File(name);
+            force(file);
+            lengths.put(name, file.length());
+        }
+        writeJournal(logged, lengths);
+        for (Map.Entry<String, byte[]> e : pending.entrySet()) {
+            replace(new File(e.getKey()), e.getValue());
+        }
+        pending.clear();
+        appending.clear();
+    }
+
+    /** Replays the journal, once, rewriting every file whose contents
+     *  differ from those it records and truncating every appended file to
+     *  its committed length.  A journal that was not completely written
+     *  was never committed, and is ignored. */
+    void recover() {
+        if (recovered) {
+            return;
+        }
+        recovered = true;
+        LinkedHashMap<String, Long> lengths = new LinkedHashMap<>();
+        Map<String, byte[]> logged = readJournal(lengths);
+        if (logged == null) {
+            return;
+        }
+        for (Map.Entry<String, Long> e : lengths.entrySet()) {
+            File file = new File(e.getKey());
+            if (file.length() > e.getValue()) {
+                try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                    out.setLength(e.getValue());
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+        }
+        for (Map.Entry<String, byte[]> e : logged.entrySet()) {
+            File file = new File(e.getKey());
+            if (e.getValue() == null ? file.exists()
+                : !file.isFile()
+                  || !Arrays.equals(Utils.readContents(file), e.getValue())) {
+                replace(file, e.getValue());
+            }
+        }
+    }
+
+    /** Returns the files recorded in the journal, or null if there is no
+     *  complete journal, adding the committed lengths of appended files it
+     *  records to LENGTHS. */
+    private Map<String, byte[]> readJournal(Map<String, Long> lengths) {
+        if (!journal.isFile()) {
+            return null;
+        }
+        byte[] bytes = Utils.readContents(journal);
+        int end = bytes.length - ObjectStore.ID_LENGTH;
+        if (end < MAGIC.length) {
+            return null;
+        }
+        MessageDigest md = Utils.sha1Digest();
+        md.update(bytes, 0, end);
+        if (!Arrays.equals(md.digest(),
+                           Arrays.copyOfRange(bytes, end, bytes.length))
+            || !Arrays.equals(MAGIC, Arrays.copyOf(bytes, MAGIC.length))) {
+            return null;
+        }
+        LinkedHashMap<String, byte[]> result = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                 new ByteArrayInputStream(bytes, MAGIC.length,
+                                          end - MAGIC.length))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 1) {
+                String name = in.readUTF();
+                int length = in.readInt();
+                byte[] contents = null;
+                if (length >= 0) {
+                    contents = new byte[length];
+                    in.readFully(contents);
+                }
+                result.put(name, contents);
+            }
+            if (in.available() > 0) {
+                int appended = in.readInt();
+                for (int i = 0; i < appended; i += 1) {
+                    lengths.put(in.readUTF(), in.readLong());
+                }
+            }
+        } catch (IOException excp) {
+            return null;
+        }
+        return result;
+    }
+
+    /** Writes a journal of FILES and of the LENGTHS of appended files,
+     *  durably, and moves it into place.  This is the point at which the
+     *  transaction commits. */
+    private void writeJournal(Map<String, byte[]> files,
+                              Map<String, Long> lengths) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(MAGIC);
+            out.writeInt(files.size());
+            for (Map.Entry<String, byte[]> e : files.entrySet()) {
+                out.writeUTF(e.getKey());
+                if (e.getValue() == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(e.getValue().length);
+                    out.write(e.getValue());
+                }
+            }
+            out.writeInt(lengths.size());
+            for (Map.Entry<String, Long> e : lengths.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue());
+            }
+            MessageDigest md = Utils.sha1Digest();
+            md.update(bytes.toByteArray());
+            out.write(md.digest());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        File dir = journal.getParentFile();
+        try {
+            File temp = File.createTempFile("journal", null, dir);
+            try (FileChannel out = FileChannel.open(
+                     temp.toPath(), StandardOpenOption.WRITE)) {
+                out.write(ByteBuffer.wrap(bytes.toByteArray()));
+                out.force(true);
+            }
+            Files.move(temp.toPath(), journal.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        force(dir);
+    }
+
+    /** Replaces the contents of FILE with CONTENTS through a temporary file
+     *  and an atomic rename, so that FILE is never seen half written.  A
+     *  null CONTENTS deletes FILE. */
+    private static void replace(File file, byte[] contents) {
+        if (contents == null) {
+            file.delete();
+            return;
+        }
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            parent.mkdirs();
+            File temp = File.createTempFile(".meta", null, parent);
+            Files.write(temp.toPath(), contents);
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Flushes FILE, which may be a directory, to disk.  Not every system
+     *  allows directories to be opened, in which case nothing is done. */
+    private static void force(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Length of journal past which the files it wrote are fsynced and it is
+     *  started afresh. */
+    private static final long CHECKPOINT = 1 << 20;
+
+    /** Bytes at the start of a journal. */
+    private static final byte[] MAGIC = {'G', 'J', 'N', 'L'};
+
+    /** The transaction of the repository in the current directory. */
+    private static Transaction instance;
+
+    /** The journal file. */
+    private final File journal;
+    /** The contents of the files written in this transaction, by name. */
+    private final LinkedHashMap<String, byte[]> pending =
+        new LinkedHashMap<>();
+    /** The names of the files appended to in this transaction. */
+    private final LinkedHashSet<String> appending = new LinkedHashSet<>();
+    /** True once the journal has been replayed. */
+    private boolean recovered;
+}
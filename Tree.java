@@ -0,0 +1,317 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The contents of one directory of a commit: a sorted list of names, each
+ *  naming either a file's blob or a subdirectory's tree.  Trees are stored
+ *  as tree objects in the object store, named by the hash of their
+ *  contents, so that a directory that is the same in two commits is the
+ *  same object.  A commit that changes one file writes only the trees of
+ *  the directories on the path to it, and a comparison of two commits skips
+ *  every subtree they share.
+ *
+ *  A tree object is a sequence of entries sorted by name, each a byte that
+ *  is 'b' for a blob or 't' for a tree, the 20-byte id of the blob or tree,
+ *  and the name in UTF-8 followed by a zero byte.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+class Tree {
+
+    /** Type of an object holding a tree. */
+    static final String TREE = "tree";
+
+    /** An empty tree. */
+    private Tree() {
+    }
+
+    /** Returns the id of the tree made by applying CHANGES to the tree BASE
+     *  in STORE, writing the new trees to STORE.  CHANGES maps each
+     *  changed path, with '/' between directories, to the id of its new
+     *  blob, or to null if it is removed.  A null BASE is the empty tree.
+     *  Only the trees of directories containing changes are written;
+     *  directories left empty are removed. */
+    static String update(ObjectStore store, String base,
+                         Map<String, String> changes) {
+        ObjectId id = updateDir(store, base == null ? null
+                                : ObjectId.fromHex(base), changes);
+        return (id == null ? write(store, new Tree()) : id).name();
+    }
+
+    /** Returns the id of the blob at PATH in the tree ROOT in STORE, or null
+     *  if there is no file there.  Only the trees on the path are read. */
+    static String lookup(ObjectStore store, String root, String path) {
+        ObjectId id = root == null ? null : ObjectId.fromHex(root);
+        int start = 0;
+        while (id != null) {
+            int slash = path.indexOf('/', start);
+            String name = path.substring(start,
+                                         slash < 0 ? path.length() : slash);
+            Entry entry = read(store, id).entries.get(name);
+            if (entry == null || entry.isTree != slash >= 0) {
+                return null;
+            } else if (slash < 0) {
+                return entry.id.name();
+            }
+            id = entry.id;
+            start = slash + 1;
+        }
+        return null;
+    }
+
+    /** Adds to FILES every file of the tree ID in STORE, mapping its path,
+     *  which begins with PREFIX, to the id of its blob. */
+    static void flatten(ObjectStore store, String id, String prefix,
+                        Map<String, String> files) {
+        if (id != null) {
+            flatten(store, ObjectId.fromHex(id), prefix, files);
+        }
+    }
+
+    /** Adds to FILES every file of the tree ID in STORE, mapping its path,
+     *  which begins with PREFIX, to the id of its blob. */
+    private static void flatten(ObjectStore store, ObjectId id, String prefix,
+                                Map<String, String> files) {
+        for (Map.Entry<String, Entry> e : read(store, id).entries.entrySet()) {
+            String path = prefix + e.getKey();
+            if (e.getValue().isTree) {
+                flatten(store, e.getValue().id, path + "/", files);
+            } else {
+                files.put(path, e.getValue().id.name());
+            }
+        }
+    }
+
+    /** Adds to CHANGES each path, beginning with PREFIX, at which the trees
+     *  A and B of STORE differ, mapped to the id of its blob in B or to null
+     *  if B has no file there.  Either tree may be null for an empty tree.
+     *  Subtrees with equal ids are skipped without being read. */
+    static void diff(ObjectStore store, String a, String b, String prefix,
+                     Map<String, String> changes) {
+        diff(store, a == null ? null : ObjectId.fromHex(a),
+             b == null ? null : ObjectId.fromHex(b), prefix, changes);
+    }
+
+    /** Adds to CHANGES each path, beginning with PREFIX, at which the trees
+     *  A and B of STORE differ, mapped to the id of its blob in B or to null
+     *  if B has no file there.  Either tree may be null for an empty
+     *  tree. */
+    private static void diff(ObjectStore store, ObjectId a, ObjectId b,
+                             String prefix, Map<String, String> changes) {
+        if (a != null && a.equals(b)) {
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> as = entries(store, a);
+        Iterator<Map.Entry<String, Entry>> bs = entries(store, b);
+        Map.Entry<String, Entry> ea = as.hasNext() ? as.next() : null;
+        Map.Entry<String, Entry> eb = bs.hasNext() ? bs.next() : null;
+        while (ea != null || eb != null) {
+            int c = ea == null ? 1 : eb == null ? -1
+                : ea.getKey().compareTo(eb.getKey());
+            Entry x = c <= 0 ? ea.getValue() : null;
+            Entry y = c >= 0 ? eb.getValue() : null;
+            String path = prefix + (c <= 0 ? ea.getKey() : eb.getKey());
+            if (x == null || y == null || !x.id.equals(y.id)
+                || x.isTree != y.isTree) {
+                if (x != null && x.isTree || y != null && y.isTree) {
+                    diff(store, x != null && x.isTree ? x.id : null,
+                         y != null && y.isTree ? y.id : null,
+                         path + "/", changes);
+                }
+                if (y != null && !y.isTree) {
+                    changes.put(path, y.id.name());
+                } else if (x != null && !x.isTree) {
+                    changes.put(path, null);
+                }
+            }
+            if (c <= 0) {
+                ea = as.hasNext() ? as.next() : null;
+            }
+            if (c >= 0) {
+                eb = bs.hasNext() ? bs.next() : null;
+            }
+        }
+    }
+
+    /** Adds to SEEN the ids of the tree ID of STORE and of all trees below
+     *  it that are not already in SEEN, and adds to NAMES a path for each
+     *  blob found in them.  Subtrees already seen are not read again. */
+    static void collect(ObjectStore store, String id, String prefix,
+                        ObjectIdMap<Boolean> seen, Map<String, String> names) {
+        if (id != null) {
+            collect(store, ObjectId.fromHex(id), prefix, seen, names);
+        }
+    }
+
+    /** Adds to SEEN the ids of the tree ID of STORE and of all trees below
+     *  it that are not already in SEEN, and adds to NAMES a path for each
+     *  blob found in them. */
+    private static void collect(ObjectStore store, ObjectId id, String prefix,
+                                ObjectIdMap<Boolean> seen,
+                                Map<String, String> names) {
+        if (!seen.putIfAbsent(id, true)) {
+            return;
+        }
+        for (Map.Entry<String, Entry> e : read(store, id).entries.entrySet()) {
+            String path = prefix + e.getKey();
+            if (e.getValue().isTree) {
+                collect(store, e.getValue().id, path + "/", seen, names);
+            } else {
+                names.putIfAbsent(e.getValue().id.name(), path);
+            }
+        }
+    }
+
+    /** Returns the id of the tree made by applying CHANGES, whose paths are
+     *  relative to this directory, to BASE in STORE, or null if it is
+     *  empty. */
+    private static ObjectId updateDir(ObjectStore store, ObjectId base,
+                                      Map<String, String> changes) {
+        Tree tree = new Tree();
+        if (base != null) {
+            tree.entries.putAll(read(store, base).entries);
+        }
+        TreeMap<String, TreeMap<String, String>> below = new TreeMap<>();
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                below.computeIfAbsent(path.substring(0, slash),
+                                      k -> new TreeMap<>())
+                    .put(path.substring(slash + 1), e.getValue());
+            } else if (e.getValue() == null) {
+                Entry old = tree.entries.get(path);
+                if (old != null && !old.isTree) {
+                    tree.entries.remove(path);
+                }
+            } else {
+                tree.entries.put(path, new Entry(false, ObjectId.fromHex(
+                                                     e.getValue())));
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, String>> e : below.entrySet()) {
+            Entry old = tree.entries.get(e.getKey());
+            ObjectId id = updateDir(store, old != null && old.isTree
+                                    ? old.id : null, e.getValue());
+            if (id != null) {
+                tree.entries.put(e.getKey(), new Entry(true, id));
+            } else if (old != null && old.isTree) {
+                tree.entries.remove(e.getKey());
+            }
+        }
+        if (tree.entries.isEmpty()) {
+            return null;
+        } else if (base != null && tree.entries.equals(read(store, base)
+                                                       .entries)) {
+            return base;
+        }
+        return write(store, tree);
+    }
+
+    /** Stores TREE in STORE if it is not there already, returning its id. */
+    private static ObjectId write(ObjectStore store, Tree tree) {
+        byte[] contents = tree.encode();
+        ObjectId id = Utils.sha1Id(TREE + " ", contents);
+        String name = id.name();
+        if (!store.contains(name)) {
+            store.put(name, TREE, contents);
+        }
+        CACHE.put(id, tree);
+        return id;
+    }
+
+    /** Returns the tree ID of STORE. */
+    private static Tree read(ObjectStore store, ObjectId id) {
+        Tree result = CACHE.get(id);
+        if (result == null) {
+            result = decode(store.read(id.name()));
+            if (CACHE.size() >= CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(id, result);
+        }
+        return result;
+    }
+
+    /** Returns an iterator over the entries of the tree ID of STORE, in
+     *  order of name.  A null ID is the empty tree. */
+    private static Iterator<Map.Entry<String, Entry>> entries(
+        ObjectStore store, ObjectId id) {
+        if (id == null) {
+            return new TreeMap<String, Entry>().entrySet().iterator();
+        }
+        return read(store, id).entries.entrySet().iterator();
+    }
+
+    /** Returns the stored form of this tree. */
+    private byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            out.write(e.getValue().isTree ? 't' : 'b');
+            out.writeBytes(e.getValue().id.toBytes());
+            out.writeBytes(e.getKey().getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns the tree stored as BYTES. */
+    private static Tree decode(byte[] bytes) {
+        Tree result = new Tree();
+        int pos = 0;
+        while (pos < bytes.length) {
+            boolean isTree = bytes[pos] == 't';
+            pos += 1;
+            ObjectId id = ObjectId.fromBytes(bytes, pos);
+            pos += ObjectStore.ID_LENGTH;
+            int end = pos;
+            while (bytes[end] != 0) {
+                end += 1;
+            }
+            String name = new String(bytes, pos, end - pos,
+                                     StandardCharsets.UTF_8);
+            result.entries.put(name, new Entry(isTree, id));
+            pos = end + 1;
+        }
+        return result;
+    }
+
+    /** One name in a tree. */
+    private static class Entry {
+        /** An entry naming the tree (if ISTREE) or blob ID. */
+        Entry(boolean isTree, ObjectId id) {
+            this.isTree = isTree;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry && ((Entry) obj).isTree == isTree
+                && ((Entry) obj).id.equals(id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        /** True iff this names a subdirectory. */
+        private final boolean isTree;
+        /** The id of the blob or tree. */
+        private final ObjectId id;
+    }
+
+    /** Most trees kept in CACHE. */
+    private static final int CACHE_SIZE = 4096;
+    /** Trees read or written so far, by id.  Trees never change, so they
+     *  may be shared freely, including between the threads of add. */
+    private static final ConcurrentHashMap<ObjectId, Tree> CACHE =
+        new ConcurrentHashMap<>();
+
+    /** The entries of this tree, by name. */
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+}
@@ -1,7 +1,20 @@
 package gitlet;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
 import org.junit.Test;
 import ucb.junit.textui;
 
@@ -25,4 +38,340 @@ public class UnitTest {
         File f = new File(".gitlet/");
         assertTrue(f.exists());
     }
-}
\ No newline at end of file
+
+    /** Tests that objects survive a round trip through the object store. */
+    @Test
+    public void testObjectStore() throws IOException {
+        ObjectStore store = new ObjectStore(new File("testObjects"));
+        byte[] contents = "some file contents\n".getBytes();
+        String id = store.put(ObjectStore.BLOB, contents);
+        assertEquals(Utils.sha1(contents), id);
+        assertTrue(store.contains(id));
+        assertTrue(store.fileFor(id).getParentFile().getName()
+                   .equals(id.substring(0, 2)));
+        assertEquals(ObjectStore.BLOB, store.type(id));
+        assertEquals(contents.length, store.size(id));
+        assertArrayEquals(contents, store.read(id));
+        try (InputStream in = store.open(id)) {
+            assertEquals(contents[0], (byte) in.read());
+        }
+    }
+
+    /** Tests that deltas reproduce the version they were made from. */
+    @Test
+    public void testDelta() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i += 1) {
+            text.append("line ").append(i).append("\n");
+        }
+        byte[] base = text.toString().getBytes();
+        text.insert(5000, "an inserted line\n").delete(100, 200);
+        byte[] target = text.toString().getBytes();
+        byte[] delta = Delta.create(base, target);
+        assertTrue(delta.length < target.length / 10);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        assertArrayEquals(base, Delta.apply(target,
+                                            Delta.create(target, base)));
+    }
+
+    /** Tests that the index survives being written and read back. */
+    @Test
+    public void testIndex() {
+        File file = new File("testIndex");
+        file.delete();
+        Index index = new Index(file);
+        String id = Utils.sha1("contents");
+        index.put("b.txt", id, Index.ADDED, null);
+        index.put("a.txt", id, Index.REMOVED, null);
+        index.put("c.txt", id, Index.TRACKED, null);
+        index.write();
+        Index copy = new Index(file);
+        assertEquals(index.staged(), copy.staged());
+        assertEquals("[a.txt]", copy.removed().toString());
+        assertEquals(id, copy.get("c.txt").getId());
+        assertTrue(copy.hasStagedChanges());
+    }
+
+    /** Tests merge bases and ancestry in the commit graph. */
+    @Test
+    public void testCommitGraph() {
+        File file = new File("testGraph");
+        File lookup = new File("testGraph.lookup");
+        file.delete();
+        lookup.delete();
+        new File(lookup.getPath() + ".recent").delete();
+        CommitGraph graph = new CommitGraph(file, lookup);
+        String[] ids = new String[200];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = Utils.sha1("commit " + i);
+        }
+        graph.add(ids[0], null, null, 0);
+        for (int i = 1; i < 100; i += 1) {
+            graph.add(ids[i], ids[i - 1], null, i);
+        }
+        graph.add(ids[100], ids[50], null, 100);
+        for (int i = 101; i < 150; i += 1) {
+            graph.add(ids[i], ids[i - 1], null, i);
+        }
+        graph.add(ids[150], ids[99], ids[149], 150);
+        assertEquals(151, graph.size());
+        for (int i = 0; i <= 150; i += 1) {
+            assertEquals(i, graph.find(ids[i]));
+        }
+        assertEquals(-1, graph.find(ids[199]));
+        assertEquals(50, graph.mergeBase(99, 149));
+        assertEquals(149, graph.mergeBase(150, 149));
+        assertEquals(50, graph.mergeBase(70, 120));
+        assertEquals(40, graph.mergeBase(40, 120));
+        assertTrue(graph.isAncestor(120, 150));
+        assertTrue(graph.isAncestor(0, 150));
+        assertTrue(!graph.isAncestor(120, 99));
+        assertEquals(53, graph.generation(101));
+    }
+
+    /** Tests resolving abbreviated ids through the commit graph, both in
+     *  its sorted lookup table and among rows added since. */
+    @Test
+    public void testFindPrefix() {
+        File file = new File("testPrefixGraph");
+        File lookup = new File("testPrefixGraph.lookup");
+        file.delete();
+        lookup.delete();
+        new File(lookup.getPath() + ".recent").delete();
+        CommitGraph graph = new CommitGraph(file, lookup);
+        String[] ids = new String[300];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = Utils.sha1("prefix " + i);
+            graph.add(ids[i], i == 0 ? null : ids[i - 1], null, i);
+        }
+        for (int i = 0; i < ids.length; i += 1) {
+            int[] rows = graph.findPrefix(ids[i].substring(0, 8), 2);
+            assertEquals(1, rows.length);
+            assertEquals(i, rows[0]);
+        }
+        int matches = 0;
+        for (String id : ids) {
+            if (id.startsWith(ids[0].substring(0, 2))) {
+                matches += 1;
+            }
+        }
+        assertEquals(matches,
+                     graph.findPrefix(ids[0].substring(0, 2), 300).length);
+    }
+
+    /** Tests searching the message index by words, text and date, with
+     *  dates that arrive out of order. */
+    @Test
+    public void testMessageIndex() {
+        File dir = new File("testMessageIndex");
+        File[] tokens = new File(dir, "tokens").listFiles();
+        for (File f : tokens == null ? new File[0] : tokens) {
+            f.delete();
+        }
+        for (String name : new String[] {"messages", "offsets", "dates"}) {
+            new File(dir, name).delete();
+        }
+        MessageIndex index = new MessageIndex(dir);
+        index.add(0, 100, "initial commit");
+        index.add(1, 300, "Fix the parser");
+        index.add(2, 200, "add parser tests");
+        index.add(3, 400, "fix");
+        assertEquals(4, index.size());
+        assertEquals("add parser tests", index.message(2));
+        long any = Long.MIN_VALUE, all = Long.MAX_VALUE;
+        assertArrayEquals(new int[] {3},
+                          index.search("fix", MessageIndex.EXACT, any, all));
+        assertArrayEquals(new int[] {1, 3},
+                          index.search("FIX", MessageIndex.WORDS, any, all));
+        assertArrayEquals(new int[] {1, 2},
+                          index.search("parser", MessageIndex.SUBSTRING,
+                                       any, all));
+        assertArrayEquals(new int[] {2, 3},
+                          index.search("^[af]", MessageIndex.REGEX,
+                                       any, all));
+        assertArrayEquals(new int[] {1, 2},
+                          index.search(null, MessageIndex.EXACT, 150, 300));
+        assertArrayEquals(new int[] {1},
+                          index.search("parser", MessageIndex.WORDS,
+                                       250, all));
+    }
+
+    /** Tests that trees write only the directories on the path to a change
+     *  and that diffs find exactly the changed files. */
+    @Test
+    public void testTree() {
+        ObjectStore store = new ObjectStore(new File("testTrees"));
+        TreeMap<String, String> files = new TreeMap<>();
+        for (int i = 0; i < 20; i += 1) {
+            files.put("d" + (i % 4) + "/e" + (i % 3) + "/f" + i,
+                      Utils.sha1("file " + i));
+        }
+        files.put("top", Utils.sha1("top"));
+        String first = Tree.update(store, null, files);
+        int objects = store.looseIds().size();
+        assertEquals(files.get("d1/e2/f5"),
+                     Tree.lookup(store, first, "d1/e2/f5"));
+        assertEquals(null, Tree.lookup(store, first, "d1/e2"));
+        TreeMap<String, String> changes = new TreeMap<>();
+        changes.put("d1/e2/f5", Utils.sha1("changed"));
+        changes.put("d2/e0/f6", null);
+        String second = Tree.update(store, first, changes);
+        assertEquals(objects + 5, store.looseIds().size());
+        TreeMap<String, String> diff = new TreeMap<>();
+        Tree.diff(store, first, second, "", diff);
+        assertEquals(changes, diff);
+        TreeMap<String, String> flat = new TreeMap<>();
+        Tree.flatten(store, second, "", flat);
+        assertEquals(files.size() - 1, flat.size());
+        changes.put("d1/e2/f5", files.get("d1/e2/f5"));
+        changes.put("d2/e0/f6", files.get("d2/e0/f6"));
+        assertEquals(first, Tree.update(store, second, changes));
+    }
+
+    /** Tests that object ids convert to and from hex and bytes and work as
+     *  keys of an ObjectIdMap. */
+    @Test
+    public void testObjectId() {
+        String hex = Utils.sha1("object id");
+        ObjectId id = ObjectId.fromHex(hex);
+        assertEquals(hex, id.name());
+        assertEquals(id, Utils.sha1Id("object id"));
+        assertEquals(id, ObjectId.fromBytes(id.toBytes(), 0));
+        assertEquals(hex, ObjectStore.toHex(ObjectStore.toBytes(hex)));
+        assertEquals(null, ObjectId.parse(hex.substring(1)));
+        assertEquals(null, ObjectId.parse("g" + hex.substring(1)));
+        assertTrue(ObjectId.fromHex("00" + hex.substring(2))
+                   .compareTo(ObjectId.fromHex("ff" + hex.substring(2))) < 0);
+        ObjectIdMap<Integer> map = new ObjectIdMap<>();
+        for (int i = 0; i < 1000; i += 1) {
+            assertEquals(null, map.put(Utils.sha1Id("" + i), i));
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i += 1) {
+            assertEquals(Integer.valueOf(i), map.get(Utils.sha1Id("" + i)));
+        }
+        assertTrue(!map.putIfAbsent(Utils.sha1Id("7"), 0));
+        assertEquals(null, map.get(id));
+    }
+
+    /** Tests that changes to different lines merge cleanly and that only the
+     *  conflicting lines are marked. */
+    @Test
+    public void testMerger() throws IOException {
+        String base = "a\nb\nc\nd\ne\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(!Merger.merge(base.getBytes(), "A\nb\nc\nd\ne\n".getBytes(),
+                                 "a\nb\nc\nd\nE\n".getBytes(), out));
+        assertEquals("A\nb\nc\nd\nE\n", out.toString());
+        out.reset();
+        assertTrue(Merger.merge(base.getBytes(), "a\nb\nX\nd\ne\n".getBytes(),
+                                "a\nb\nY\nd\ne\n".getBytes(), out));
+        assertEquals("a\nb\n<<<<<<< HEAD\nX\n=======\nY\n>>>>>>>\nd\ne\n",
+                     out.toString());
+    }
+
+    /** Tests that a large blob stored in chunks reads back whole, and that
+     *  a small edit to it adds only a few chunks. */
+    @Test
+    public void testChunks() throws IOException {
+        ObjectStore store = new ObjectStore(new File("testChunks"));
+        byte[] contents = new byte[(int) ObjectStore.CHUNK_THRESHOLD * 4];
+        new Random(61).nextBytes(contents);
+        File file = new File("testChunks.bin");
+        Files.write(file.toPath(), contents);
+        String id = store.insert(ObjectStore.BLOB, file);
+        assertEquals(Utils.sha1(contents), id);
+        assertEquals(ObjectStore.CHUNKS, store.type(id));
+        assertEquals(contents.length, store.blobSize(id));
+        assertArrayEquals(contents, store.readBlob(id));
+        int objects = store.looseIds().size();
+        contents[contents.length / 2] += 1;
+        Files.write(file.toPath(), contents);
+        String changed = store.insert(ObjectStore.BLOB, file);
+        assertTrue(store.looseIds().size() - objects <= 3);
+        assertArrayEquals(contents, store.readBlob(changed));
+        file.delete();
+    }
+
+    /** Tests that bitmaps survive compression, with runs of zeros and of
+     *  ones and literal words between them. */
+    @Test
+    public void testBitmap() throws IOException {
+        Bitmap bitmap = new Bitmap();
+        for (int i = 0; i < 1000; i += 3) {
+            bitmap.set(i);
+        }
+        for (int i = 5000; i < 9000; i += 1) {
+            bitmap.set(i);
+        }
+        bitmap.set(100000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        assertTrue(bytes.size() < 400);
+        Bitmap copy = Bitmap.read(new DataInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(bitmap.cardinality(), copy.cardinality());
+        for (int i = 0; i < 100010; i += 1) {
+            assertEquals(bitmap.get(i), copy.get(i));
+        }
+        copy.or(bitmap);
+        assertEquals(bitmap.cardinality(), copy.cardinality());
+    }
+
+    /** Tests that gc deletes a commit that reset left unreachable, along
+     *  with the blob only it had, and drops it from the log and message
+     *  index, while keeping the commits still on a branch. */
+    @Test
+    public void testGcAfterReset() throws IOException {
+        File dir = Files.createTempDirectory("gitletGc").toFile();
+        File f = new File(dir, "f.txt");
+        Files.write(f.toPath(), "one\n".getBytes());
+        gitlet(dir, "init");
+        gitlet(dir, "add", "f.txt");
+        gitlet(dir, "commit", "one");
+        Files.write(f.toPath(), "two\n".getBytes());
+        gitlet(dir, "add", "f.txt");
+        gitlet(dir, "commit", "two");
+        String log = gitlet(dir, "log");
+        String two = log.substring(log.indexOf("Commit ") + 7).substring(0, 40);
+        String one = log.substring(log.indexOf("Commit ", log.indexOf(two))
+                                   + 7).substring(0, 40);
+        gitlet(dir, "reset", one);
+        gitlet(dir, "gc", "--prune=now");
+        ObjectStore store = new ObjectStore(new File(dir, ".gitlet/objects"));
+        assertTrue(!store.contains(two));
+        assertTrue(!store.contains(Utils.sha1("two\n".getBytes())));
+        assertTrue(store.contains(one));
+        assertTrue(store.contains(Utils.sha1("one\n".getBytes())));
+        assertTrue(!gitlet(dir, "global-log").contains(two));
+        assertTrue(!gitlet(dir, "find", "two").contains(two));
+        assertTrue(gitlet(dir, "find", "one").contains(one));
+        assertTrue(gitlet(dir, "log").contains(one));
+        Files.write(f.toPath(), "three\n".getBytes());
+        gitlet(dir, "checkout", "--", "f.txt");
+        assertEquals("one\n", new String(Files.readAllBytes(f.toPath())));
+        Utils.deleteTree(dir);
+    }
+
+    /** Runs the gitlet command ARGS in a new process in directory DIR, and
+     *  returns what it printed. */
+    private static String gitlet(File dir, String... args)
+        throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java")
+                    .getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("gitlet.Main");
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(dir)
+            .redirectErrorStream(true).start();
+        String result = new String(process.getInputStream().readAllBytes());
+        try {
+            assertEquals(0, process.waitFor());
+        } catch (InterruptedException excp) {
+            throw new IOException(excp);
+        }
+        return result;
+    }
+}
@@ -1,14 +1,17 @@
 package gitlet;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -22,25 +25,35 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
-            }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+        return ObjectId.toHex(digest(vals), 0);
+    }
+
+    /** Returns the SHA-1 hash of the concatenation of VALS, which may
+     *  be any mixture of byte arrays and Strings, as an id. */
+    static ObjectId sha1Id(Object... vals) {
+        return ObjectId.fromBytes(digest(vals), 0);
+    }
+
+    /** Returns the SHA-1 digest of the concatenation of VALS, computed
+     *  with this thread's digest. */
+    private static byte[] digest(Object... vals) {
+        MessageDigest md = DIGEST.get();
+        md.reset();
+        long hashed = 0;
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+                hashed += ((byte[]) val).length;
+            } else if (val instanceof String) {
+                byte[] bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+                md.update(bytes);
+                hashed += bytes.length;
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
         }
+        Trace.count(Trace.BYTES_HASHED, hashed);
+        return md.digest();
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -49,6 +62,28 @@ class Utils {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** Each thread's SHA-1 digest, reused by every hash it computes, so that
+     *  hashing allocates no digest and looks up no provider. */
+    private static final ThreadLocal<MessageDigest> DIGEST =
+        ThreadLocal.withInitial(Utils::sha1Digest);
+
+    /** Returns a fresh SHA-1 digest, for callers that hold one across calls
+     *  that may themselves hash. */
+    static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns the SHA-1 hash of the contents of FILE, read in pieces so
+     *  that files of any size may be hashed.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static String sha1(File file) {
+        return copyContents(file, null);
+    }
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -74,6 +109,17 @@ class Utils {
         return restrictedDelete(new File(file));
     }
 
+    /** Deletes FILE and, if it is a directory, everything beneath it. */
+    static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
     /* READING AND WRITING FILE CONTENTS */
 
     /** Return the entire contents of FILE as a byte array.  FILE must
@@ -104,6 +150,37 @@ class Utils {
         }
     }
 
+    /** Copy the contents of SOURCE to TARGET, creating or overwriting it as
+     *  needed, and return their SHA-1 hash.  The contents are read once,
+     *  through a fixed-size buffer, so files of any size may be copied.  If
+     *  TARGET is null, only computes the hash.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static String copyContents(File source, File target) {
+        if (!source.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        MessageDigest md = DIGEST.get();
+        md.reset();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = target == null
+                 ? OutputStream.nullOutputStream()
+                 : new FileOutputStream(target)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                md.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+                Trace.count(Trace.BYTES_HASHED, n);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return ObjectId.toHex(md.digest(), 0);
+    }
+
+    /** Size of the buffer used when copying or hashing files. */
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
     /* DIRECTORIES */
 
     /** Filter out all but plain files. */
@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** A synthetic repository shared by the benchmarks, built in the current
+ *  directory before each trial.  It has FILECOUNT files of FILESIZE random
+ *  bytes each, spread over a few directories, and COMMITCOUNT commits, each
+ *  after the first changing one file.  The second half of the commits are
+ *  split between two branches, master and side, which fork at the middle
+ *  of the history.  The same parameters always build the same files.
+ *
+ *  Commits are written through the stores directly rather than through
+ *  gitlet commands, so that large repositories are built quickly.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+@State(Scope.Benchmark)
+public class BenchRepo {
+
+    /** Number of commits, not counting the initial one. */
+    @Param({"100", "1000"})
+    public int commitCount;
+
+    /** Number of files in each commit. */
+    @Param({"100", "1000"})
+    public int fileCount;
+
+    /** Size in bytes of each file. */
+    @Param({"1024", "16384"})
+    public int fileSize;
+
+    /** Builds the repository, replacing any left by an earlier trial. */
+    @Setup(Level.Trial)
+    public void create() {
+        Utils.deleteTree(new File(".gitlet"));
+        ObjectStore.invalidate();
+        CommitStore.invalidate();
+        Transaction.invalidate();
+        Refs.invalidate();
+        new FileStructure().init();
+        Transaction.instance().commit();
+
+        Random random = new Random(SEED);
+        objects = ObjectStore.instance();
+        CommitStore commits = CommitStore.instance();
+        Refs refs = Refs.instance();
+        String[] paths = new String[fileCount];
+        Commit first = new Commit("files", commits.get(refs.head()));
+        for (int i = 0; i < fileCount; i += 1) {
+            paths[i] = "d" + (i % DIRECTORIES) + "/f" + i;
+            first.addFileData(paths[i], blob(random));
+        }
+        first.setHash();
+        commits.put(first);
+        Commit fork = first, master = first, side = first;
+        for (int i = 1; i < commitCount; i += 1) {
+            boolean onSide = i > commitCount / 2 && i % 2 == 0;
+            Commit c = new Commit("change " + i, onSide ? side : master);
+            c.addFileData(paths[random.nextInt(fileCount)], blob(random));
+            c.setHash();
+            commits.put(c);
+            if (onSide) {
+                side = c;
+            } else {
+                master = c;
+                if (i <= commitCount / 2) {
+                    side = c;
+                }
+            }
+        }
+        refs.setBranch("master", master.getHash());
+        refs.setBranch("side", side.getHash());
+        Transaction.instance().commit();
+
+        this.master = master;
+        this.side = side;
+        content = new byte[fileSize];
+        random.nextBytes(content);
+        blobId = objects.put(ObjectStore.BLOB, content);
+    }
+
+    /** Stores FILESIZE random bytes from RANDOM as a blob and returns its
+     *  id. */
+    private String blob(Random random) {
+        byte[] bytes = new byte[fileSize];
+        random.nextBytes(bytes);
+        return objects.put(ObjectStore.BLOB, bytes);
+    }
+
+    /** Seed of the random contents of files. */
+    private static final long SEED = 61;
+
+    /** Number of directories the files are spread over. */
+    private static final int DIRECTORIES = 16;
+
+    /** The object store of the repository. */
+    ObjectStore objects;
+    /** The tip of branch master. */
+    Commit master;
+    /** The tip of branch side. */
+    Commit side;
+    /** FILESIZE random bytes, stored as the blob BLOBID. */
+    byte[] content;
+    /** The id of the blob holding CONTENT. */
+    String blobId;
+}
@@ -0,0 +1,38 @@
+package gitlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of hashing: of file contents, and of a new commit, which
+ *  writes the trees of the directories it changes.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HashBenchmark {
+
+    /** Hashes the contents of one file. */
+    @Benchmark
+    public String sha1(BenchRepo repo) {
+        return Utils.sha1(repo.content);
+    }
+
+    /** Hashes a commit on top of master that changes one file. */
+    @Benchmark
+    public String setHash(BenchRepo repo) {
+        Commit c = new Commit("bench", repo.master);
+        c.addFileData("d0/f0", repo.blobId);
+        c.setHash();
+        return c.getHash();
+    }
+}
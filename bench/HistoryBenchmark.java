@@ -0,0 +1,36 @@
+package gitlet;
+
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the questions merge asks of the history: the split point
+ *  of two branches, and the files that differ between them.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HistoryBenchmark {
+
+    /** Finds the latest common ancestor of master and side. */
+    @Benchmark
+    public Commit findSplitPoint(BenchRepo repo) {
+        return FileStructure.findSplitPoint(repo.master, repo.side);
+    }
+
+    /** Compares the trees of master and side. */
+    @Benchmark
+    public TreeMap<String, String> diff(BenchRepo repo) {
+        return repo.master.diff(repo.side);
+    }
+}
@@ -0,0 +1,176 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/** Builds a synthetic repository in the current directory by running real
+ *  gitlet commands.  The repository has FILES text files of about SIZE
+ *  bytes and COMMITS commits made round-robin on BRANCHES branches; after
+ *  each commit, with probability MERGES, another branch is merged into the
+ *  current one.  Each branch changes only the files it owns (those whose
+ *  number is its own modulo BRANCHES), so merges never conflict.  The same
+ *  arguments and SEED always build the same history, apart from the dates
+ *  of commits.
+ *
+ *  Usage: java gitlet.RepoGenerator COMMITS FILES BRANCHES MERGES SIZE
+ *  [SEED]
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+public class RepoGenerator {
+
+    /** A generator of repositories with the given number of COMMITS, FILES
+     *  of about SIZE bytes, BRANCHES and density of MERGES, whose contents
+     *  are drawn from SEED. */
+    RepoGenerator(int commits, int files, int branches, double merges,
+                  int size, long seed) {
+        if (commits < 1 || branches < 1 || files < branches) {
+            throw new IllegalArgumentException("Need at least one commit "
+                                               + "and as many files as "
+                                               + "branches.");
+        }
+        this.commits = commits;
+        this.files = files;
+        this.branches = branches;
+        this.merges = merges;
+        this.size = size;
+        random = new Random(seed);
+    }
+
+    /** Builds the repository described by ARGS in the current
+     *  directory. */
+    public static void main(String... args) {
+        if (args.length < 5 || args.length > 6) {
+            System.err.println("Usage: java gitlet.RepoGenerator COMMITS "
+                               + "FILES BRANCHES MERGES SIZE [SEED]");
+            return;
+        }
+        long start = System.nanoTime();
+        RepoGenerator generator =
+            new RepoGenerator(Integer.parseInt(args[0]),
+                              Integer.parseInt(args[1]),
+                              Integer.parseInt(args[2]),
+                              Double.parseDouble(args[3]),
+                              Integer.parseInt(args[4]),
+                              args.length == 6 ? Long.parseLong(args[5])
+                              : DEFAULT_SEED);
+        generator.generate();
+        System.out.printf("Generated %d commits (%d merges) in %d ms%n",
+                          generator.made, generator.merged,
+                          (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Builds the repository in the current directory, which must not
+     *  already hold one. */
+    void generate() {
+        if (new File(".gitlet").exists()) {
+            throw new IllegalArgumentException("A repository already exists "
+                                               + "here.");
+        }
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            command("init");
+            for (int i = 0; i < files; i += 1) {
+                write(i);
+            }
+            command("add", ".");
+            command("commit", "files");
+            made = 1;
+            for (int b = 1; b < branches; b += 1) {
+                command("branch", branch(b));
+            }
+            String current = branch(0);
+            for (int n = 1; n < commits; n += 1) {
+                int b = n % branches;
+                if (!branch(b).equals(current)) {
+                    current = branch(b);
+                    command("checkout", current);
+                }
+                int changes = 1 + random.nextInt(MAX_CHANGES);
+                String[] add = new String[changes + 1];
+                add[0] = "add";
+                for (int k = 1; k <= changes; k += 1) {
+                    int owned = (files - b + branches - 1) / branches;
+                    int file = b + branches * random.nextInt(owned);
+                    write(file);
+                    add[k] = path(file);
+                }
+                command(add);
+                command("commit", "change " + n);
+                made += 1;
+                if (branches > 1 && random.nextDouble() < merges) {
+                    int other = (b + 1 + random.nextInt(branches - 1))
+                        % branches;
+                    command("merge", branch(other));
+                    merged += 1;
+                }
+            }
+            if (!current.equals(branch(0))) {
+                command("checkout", branch(0));
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /** Runs the gitlet command ARGS and commits its changes to the
+     *  repository's metadata. */
+    private static void command(String... args) {
+        Main.run(new FileStructure(), args);
+        Transaction.instance().commit();
+    }
+
+    /** Writes new contents to file number I: lines of text, each with a
+     *  random version number, adding up to about SIZE bytes. */
+    private void write(int i) {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; text.length() < size; line += 1) {
+            text.append("file ").append(i).append(" line ").append(line)
+                .append(" version ").append(random.nextInt(VERSIONS))
+                .append('\n');
+        }
+        File file = new File(path(i));
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file,
+                            text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the path of file number I. */
+    private static String path(int i) {
+        return "d" + (i % DIRECTORIES) + "/f" + i + ".txt";
+    }
+
+    /** Returns the name of branch number B; branch 0 is master. */
+    static String branch(int b) {
+        return b == 0 ? "master" : "branch" + b;
+    }
+
+    /** Seed used when none is given. */
+    private static final long DEFAULT_SEED = 61;
+    /** Most files changed by one commit. */
+    private static final int MAX_CHANGES = 3;
+    /** Number of directories the files are spread over. */
+    private static final int DIRECTORIES = 16;
+    /** Number of different versions of a line. */
+    private static final int VERSIONS = 1000;
+
+    /** Number of commits to make. */
+    private final int commits;
+    /** Number of files. */
+    private final int files;
+    /** Number of branches. */
+    private final int branches;
+    /** Chance of a merge after each commit. */
+    private final double merges;
+    /** Approximate size of each file in bytes. */
+    private final int size;
+    /** Source of the contents of files and choices of changes. */
+    private final Random random;
+    /** Number of commits made, not counting merges. */
+    private int made;
+    /** Number of merges made. */
+    private int merged;
+}
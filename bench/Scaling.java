@@ -0,0 +1,406 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** Measures how gitlet's commands scale with the size of a repository.
+ *  For each combination of the given numbers of commits and files, it
+ *  builds a repository with RepoGenerator (reusing one built earlier with
+ *  the same parameters) and runs a fixed sequence of real commands against
+ *  it, each RUNS times and each in a JVM of its own.  For every command it
+ *  records the time spent in Main, the peak resident set size of the
+ *  process and the bytes it read and wrote through system calls, and it
+ *  writes a JSON report of their percentiles, from which builds can be
+ *  compared.  Memory and I/O are read from /proc, and are reported as -1
+ *  on systems without it.
+ *
+ *  Usage: java gitlet.Scaling [--commits N,...] [--files M,...]
+ *  [--branches B] [--merges D] [--size S] [--runs R] [--label L]
+ *  [--out REPORT] DIR
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+public class Scaling {
+
+    /** Runs the harness with the options in ARGS. */
+    public static void main(String... args) throws IOException {
+        Scaling scaling = new Scaling();
+        if (!scaling.parse(args)) {
+            System.err.println("Usage: java gitlet.Scaling [--commits N,...] "
+                               + "[--files M,...] [--branches B] "
+                               + "[--merges D] [--size S] [--runs R] "
+                               + "[--label L] [--out REPORT] DIR");
+            return;
+        }
+        scaling.run();
+    }
+
+    /** Sets the options of this harness from ARGS.  Returns false if they
+     *  are malformed. */
+    private boolean parse(String... args) {
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    if (dir != null) {
+                        return false;
+                    }
+                    dir = new File(arg).getAbsoluteFile();
+                    continue;
+                }
+                String value = args[++i];
+                switch (arg) {
+                case "--commits": commits = list(value); break;
+                case "--files": files = list(value); break;
+                case "--branches": branches = Integer.parseInt(value); break;
+                case "--merges": merges = Double.parseDouble(value); break;
+                case "--size": size = Integer.parseInt(value); break;
+                case "--runs": runs = Integer.parseInt(value); break;
+                case "--label": label = value; break;
+                case "--out": out = new File(value); break;
+                default: return false;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return false;
+        }
+        return dir != null && runs > 0;
+    }
+
+    /** Returns the numbers in the comma-separated list TEXT. */
+    private static int[] list(String text) {
+        return Arrays.stream(text.split(",")).mapToInt(Integer::parseInt)
+            .toArray();
+    }
+
+    /** Builds the repositories, measures the commands against each and
+     *  writes the report. */
+    private void run() throws IOException {
+        ArrayList<Map<String, Object>> repos = new ArrayList<>();
+        for (int c : commits) {
+            for (int f : files) {
+                repos.add(measure(c, f));
+            }
+        }
+        LinkedHashMap<String, Object> report = new LinkedHashMap<>();
+        report.put("label", label);
+        report.put("java", System.getProperty("java.version"));
+        report.put("time", System.currentTimeMillis());
+        report.put("runs", runs);
+        report.put("repositories", repos);
+        try (PrintWriter w = new PrintWriter(out, StandardCharsets.UTF_8)) {
+            w.println(json(report));
+        }
+        System.out.println("Wrote " + out);
+    }
+
+    /** Builds or reuses the repository with COMMITCOUNT commits and
+     *  FILECOUNT files, runs the commands against it and returns its part
+     *  of the report. */
+    private Map<String, Object> measure(int commitCount, int fileCount)
+        throws IOException {
+        File repo = new File(dir, String.format("c%d-f%d-b%d-m%s-s%d",
+                                                commitCount, fileCount,
+                                                branches, merges, size));
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("commits", commitCount);
+        result.put("files", fileCount);
+        result.put("branches", branches);
+        result.put("merges", merges);
+        result.put("size", size);
+        if (!new File(repo, ".gitlet").isDirectory()) {
+            repo.mkdirs();
+            long start = System.nanoTime();
+            launch(repo, "gitlet.RepoGenerator", null,
+                   String.valueOf(commitCount), String.valueOf(fileCount),
+                   String.valueOf(branches), String.valueOf(merges),
+                   String.valueOf(size));
+            result.put("generateMs", (System.nanoTime() - start) / 1e6);
+        }
+        System.out.printf("%s%n", repo.getName());
+        LinkedHashMap<String, List<Sample>> samples = new LinkedHashMap<>();
+        String other = RepoGenerator.branch(branches > 1 ? 1 : 0);
+        for (int r = 0; r < runs; r += 1) {
+            sample(samples, repo, "status", "status");
+            sample(samples, repo, "log", "log");
+            sample(samples, repo, "global-log", "global-log");
+            sample(samples, repo, "find", "find", "change 1");
+            sample(samples, repo, "checkout", "checkout", other);
+            sample(samples, repo, "checkout", "checkout", "master");
+            File changed = new File(repo, "d0/f0.txt");
+            Files.writeString(changed.toPath(), "scaling run " + r + "\n",
+                              StandardCharsets.UTF_8);
+            sample(samples, repo, "add", "add", "d0/f0.txt");
+            sample(samples, repo, "commit", "commit", "scaling run " + r);
+            String[] ids = sample(samples, repo, "log -n 2", "log", "-n",
+                                  "2")
+                .lines().filter(s -> s.startsWith("Commit "))
+                .map(s -> s.substring("Commit ".length()))
+                .toArray(String[]::new);
+            if (ids.length == 2) {
+                sample(samples, repo, "reset", "reset", ids[1]);
+                sample(samples, repo, "reset", "reset", ids[0]);
+            }
+        }
+        LinkedHashMap<String, Object> commands = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Sample>> e : samples.entrySet()) {
+            commands.put(e.getKey(), summary(e.getValue()));
+            System.out.printf("  %-12s %s%n", e.getKey(),
+                              commands.get(e.getKey()));
+        }
+        result.put("commands", commands);
+        return result;
+    }
+
+    /** Runs the gitlet command ARGS in REPO, adds its measurements to
+     *  SAMPLES under NAME and returns its standard output. */
+    private String sample(Map<String, List<Sample>> samples, File repo,
+                          String name, String... args) throws IOException {
+        File stats = File.createTempFile("scaling", ".stats");
+        try {
+            long start = System.nanoTime();
+            String output = launch(repo, "gitlet.Scaling$Probe", stats,
+                                   args);
+            double processMs = (System.nanoTime() - start) / 1e6;
+            String[] fields = Files.readString(stats.toPath()).trim()
+                .split(" ");
+            samples.computeIfAbsent(name, k -> new ArrayList<>())
+                .add(new Sample(Long.parseLong(fields[0]) / 1e6, processMs,
+                                Long.parseLong(fields[1]),
+                                Long.parseLong(fields[2]),
+                                Long.parseLong(fields[3])));
+            return output;
+        } finally {
+            stats.delete();
+        }
+    }
+
+    /** Runs MAIN with ARGS in a new JVM whose working directory is DIR,
+     *  telling it to write its measurements to STATS if that is not null,
+     *  and returns its standard output. */
+    private static String launch(File dir, String main, File stats,
+                                 String... args) throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java")
+                    .getPath());
+        command.add("-cp");
+        command.add(CLASSPATH);
+        if (stats != null) {
+            command.add("-D" + STATS + "=" + stats.getAbsolutePath());
+        }
+        command.add(main);
+        Collections.addAll(command, args);
+        Process process = new ProcessBuilder(command).directory(dir)
+            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String output = new String(process.getInputStream().readAllBytes(),
+                                   StandardCharsets.UTF_8);
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException(main + " failed in " + dir);
+            }
+        } catch (InterruptedException excp) {
+            throw new IOException(excp);
+        }
+        return output;
+    }
+
+    /** Returns the percentiles of the times of SAMPLES, along with the
+     *  largest resident set size and the mean bytes read and written. */
+    private static Map<String, Object> summary(List<Sample> samples) {
+        double[] ms = samples.stream().mapToDouble(s -> s.ms).sorted()
+            .toArray();
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("samples", ms.length);
+        result.put("p50Ms", percentile(ms, 50));
+        result.put("p90Ms", percentile(ms, 90));
+        result.put("p99Ms", percentile(ms, 99));
+        result.put("maxMs", ms[ms.length - 1]);
+        result.put("processP50Ms",
+                   percentile(samples.stream().mapToDouble(s -> s.processMs)
+                              .sorted().toArray(), 50));
+        result.put("peakRssKb",
+                   samples.stream().mapToLong(s -> s.rssKb).max()
+                   .getAsLong());
+        result.put("readBytes",
+                   (long) samples.stream().mapToLong(s -> s.read).average()
+                   .getAsDouble());
+        result.put("writeBytes",
+                   (long) samples.stream().mapToLong(s -> s.written)
+                   .average().getAsDouble());
+        return result;
+    }
+
+    /** Returns the Pth percentile of SORTED, by the nearest-rank
+     *  method. */
+    private static double percentile(double[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /** Returns VALUE, which is a map, list, string or number, as JSON. */
+    @SuppressWarnings("unchecked")
+    static String json(Object value) {
+        StringBuilder result = new StringBuilder();
+        if (value instanceof Map) {
+            result.append('{');
+            String sep = "";
+            for (Map.Entry<String, Object> e
+                     : ((Map<String, Object>) value).entrySet()) {
+                result.append(sep).append(json(e.getKey())).append(':')
+                    .append(json(e.getValue()));
+                sep = ",";
+            }
+            result.append('}');
+        } else if (value instanceof List) {
+            result.append('[');
+            String sep = "";
+            for (Object o : (List<Object>) value) {
+                result.append(sep).append(json(o));
+                sep = ",";
+            }
+            result.append(']');
+        } else if (value instanceof String) {
+            result.append('"');
+            for (char c : ((String) value).toCharArray()) {
+                if (c == '"' || c == '\\') {
+                    result.append('\\').append(c);
+                } else if (c < ' ') {
+                    result.append(String.format("\\u%04x", (int) c));
+                } else {
+                    result.append(c);
+                }
+            }
+            result.append('"');
+        } else if (value instanceof Double) {
+            result.append(String.format(Locale.ROOT, "%.3f", (Double) value));
+        } else {
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    /** The measurements of one run of a command. */
+    private static class Sample {
+        /** A run that spent MS milliseconds in Main and PROCESSMS in all,
+         *  peaked at RSSKB kilobytes resident and read READ and wrote
+         *  WRITTEN bytes. */
+        Sample(double ms, double processMs, long rssKb, long read,
+               long written) {
+            this.ms = ms;
+            this.processMs = processMs;
+            this.rssKb = rssKb;
+            this.read = read;
+            this.written = written;
+        }
+
+        /** Milliseconds spent in Main. */
+        private final double ms;
+        /** Milliseconds the process took, including starting the JVM. */
+        private final double processMs;
+        /** Peak resident set size in kilobytes. */
+        private final long rssKb;
+        /** Bytes read. */
+        private final long read;
+        /** Bytes written. */
+        private final long written;
+    }
+
+    /** Runs one gitlet command in a JVM started by the harness, and writes
+     *  the nanoseconds it took, the process's peak resident set size in
+     *  kilobytes and the bytes the command read and wrote to the file named
+     *  by the system property STATS. */
+    public static class Probe {
+        /** Runs the gitlet command ARGS and writes its measurements. */
+        public static void main(String... args) throws IOException {
+            long[] before = io();
+            long start = System.nanoTime();
+            Main.main(args);
+            long time = System.nanoTime() - start;
+            long[] after = io();
+            System.out.flush();
+            Files.writeString(new File(System.getProperty(STATS)).toPath(),
+                              time + " " + peakRss() + " "
+                              + delta(before[0], after[0]) + " "
+                              + delta(before[1], after[1]) + "\n");
+        }
+
+        /** Returns AFTER - BEFORE, or -1 if either is unknown. */
+        private static long delta(long before, long after) {
+            return before < 0 || after < 0 ? -1 : after - before;
+        }
+
+        /** Returns the bytes this process has read and written through
+         *  system calls so far, or -1s if they are unknown. */
+        private static long[] io() {
+            long[] result = {-1, -1};
+            for (String line : proc("io")) {
+                if (line.startsWith("rchar:")) {
+                    result[0] = Long.parseLong(line.substring(6).trim());
+                } else if (line.startsWith("wchar:")) {
+                    result[1] = Long.parseLong(line.substring(6).trim());
+                }
+            }
+            return result;
+        }
+
+        /** Returns the peak resident set size of this process in
+         *  kilobytes, or -1 if it is unknown. */
+        private static long peakRss() {
+            for (String line : proc("status")) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+            return -1;
+        }
+
+        /** Returns the lines of /proc/self/NAME, or none if it cannot be
+         *  read. */
+        private static List<String> proc(String name) {
+            try {
+                return Files.readAllLines(new File("/proc/self", name)
+                                          .toPath());
+            } catch (IOException excp) {
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    /** System property naming the file a Probe writes to. */
+    private static final String STATS = "gitlet.scaling.stats";
+
+    /** The class path of this JVM, with every entry made absolute so that
+     *  JVMs started in other directories can use it. */
+    private static final String CLASSPATH = Arrays.stream(
+        System.getProperty("java.class.path").split(File.pathSeparator))
+        .map(p -> new File(p).getAbsolutePath())
+        .reduce((a, b) -> a + File.pathSeparator + b).orElse("");
+
+    /** Numbers of commits of the repositories. */
+    private int[] commits = {100, 1000};
+    /** Numbers of files of the repositories. */
+    private int[] files = {100, 1000};
+    /** Number of branches of each repository. */
+    private int branches = 4;
+    /** Chance of a merge after each commit. */
+    private double merges = 0.1;
+    /** Approximate size of each file. */
+    private int size = 1024;
+    /** Number of times each command is run. */
+    private int runs = 5;
+    /** Name of the build being measured. */
+    private String label = "";
+    /** The file the report is written to. */
+    private File out = new File("scaling-report.json");
+    /** Directory holding the repositories. */
+    private File dir;
+}
@@ -0,0 +1,60 @@
+package gitlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of reading and writing blobs, and of reading and writing
+ *  commits and branches through the repository's transaction.
+ *  @author Maaz Uddin, Zubin Koticha
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StorageBenchmark {
+
+    /** Compresses and writes one blob, replacing its earlier copy. */
+    @Benchmark
+    public void blobWrite(BenchRepo repo) {
+        repo.objects.put(repo.blobId, ObjectStore.BLOB, repo.content);
+    }
+
+    /** Reads and decompresses one blob. */
+    @Benchmark
+    public byte[] blobRead(BenchRepo repo) {
+        return new BlobHandle(repo.objects, repo.blobId).readAll();
+    }
+
+    /** Stores the commit at the tip of master again and points master at
+     *  it, committing the transaction durably, as a commit command does. */
+    @Benchmark
+    public void metadataWrite(BenchRepo repo) {
+        CommitStore.instance().put(repo.master);
+        Refs.instance().setBranch("master", repo.master.getHash());
+        Transaction.instance().commit();
+    }
+
+    /** Reads branch master, written when the repository was built, through
+     *  a fresh transaction and decodes the commit it points at, as the start
+     *  of every command does. */
+    @Benchmark
+    public Commit metadataRead(BenchRepo repo) {
+        Transaction.invalidate();
+        Refs.invalidate();
+        CommitStore.invalidate();
+        Commit result =
+            CommitStore.instance().get(Refs.instance().branch("master"));
+        if (result == null) {
+            throw new IllegalStateException("branch master is missing");
+        }
+        return result;
+    }
+}